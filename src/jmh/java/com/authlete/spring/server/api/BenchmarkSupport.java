@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Helpers to wire endpoints without a Spring application context.
+ */
+final class BenchmarkSupport
+{
+    private BenchmarkSupport()
+    {
+    }
+
+
+    /**
+     * Set a value to a field, including a private {@code @Autowired}
+     * field declared by a superclass.
+     */
+    static void inject(Object target, String fieldName, Object value)
+    {
+        for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass())
+        {
+            Field field;
+
+            try
+            {
+                field = c.getDeclaredField(fieldName);
+            }
+            catch (NoSuchFieldException e)
+            {
+                continue;
+            }
+
+            try
+            {
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        throw new IllegalArgumentException("No such field: " + fieldName);
+    }
+
+
+    /**
+     * Create an {@link AccessTokenPrevalidator} with the default settings.
+     */
+    static AccessTokenPrevalidator prevalidator()
+    {
+        return new AccessTokenPrevalidator(8192);
+    }
+
+
+    /**
+     * Create a {@link ResourceServerMetrics} backed by an in-memory registry.
+     */
+    static ResourceServerMetrics metrics()
+    {
+        return new ResourceServerMetrics(new SimpleMeterRegistry());
+    }
+
+
+    /**
+     * Create a disabled {@link AuthleteConcurrencyLimiter}.
+     */
+    static AuthleteConcurrencyLimiter disabledConcurrencyLimiter(ResourceServerMetrics metrics)
+    {
+        return new AuthleteConcurrencyLimiter(false, 20, 5, 200, 0.9,
+                Duration.ofSeconds(1), Duration.ofSeconds(1), metrics);
+    }
+
+
+    /**
+     * Create an {@link AccessTokenCache} without refresh-ahead.
+     */
+    static AccessTokenCache accessTokenCache(boolean enabled)
+    {
+        return new AccessTokenCache(enabled, 10000, Duration.ofSeconds(60),
+                false, Duration.ofSeconds(10), 2, 2, false);
+    }
+
+
+    /**
+     * Create a {@link RejectedAccessTokenCache}.
+     */
+    static RejectedAccessTokenCache rejectedAccessTokenCache(boolean enabled)
+    {
+        return new RejectedAccessTokenCache(enabled, 10000, Duration.ofSeconds(10));
+    }
+
+
+    /**
+     * Create a disabled {@link JwtAccessTokenValidator}, so that every
+     * access token is introspected.
+     */
+    static JwtAccessTokenValidator disabledJwtAccessTokenValidator()
+    {
+        return new JwtAccessTokenValidator(false, "", "", "",
+                Duration.ofSeconds(30), Duration.ofMinutes(5));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import com.neovisionaries.i18n.CountryCode;
+
+
+/**
+ * Benchmarks of the country endpoint without access token validation.
+ *
+ * <p>
+ * {@code lookupByExceptions} is the lookup used before {@link
+ * CountryCodeIndex}, which throws a {@code NumberFormatException} for
+ * every code that is not a known alpha code. It is kept as a baseline.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CountryBenchmark
+{
+    @Param({ "JP", "jpn", "392", "XX", "favicon.ico" })
+    public String code;
+
+
+    private CountryCode mCountryCode;
+    private CountryResponseTable mTable;
+
+
+    @Setup
+    public void setup()
+    {
+        mCountryCode = CountryEndpoint.lookup(code);
+        mTable       = new CountryResponseTable("private, no-cache");
+    }
+
+
+    @Benchmark
+    public CountryCode lookup()
+    {
+        return CountryEndpoint.lookup(code);
+    }
+
+
+    @Benchmark
+    public CountryCode lookupByExceptions()
+    {
+        CountryCode cc = CountryCode.getByCodeIgnoreCase(code);
+
+        if (cc != null)
+        {
+            return cc;
+        }
+
+        try
+        {
+            return CountryCode.getByCode(Integer.parseInt(code));
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+
+    @Benchmark
+    public Map<String, Object> buildContent()
+    {
+        return CountryEndpoint.buildContent(mCountryCode);
+    }
+
+
+    @Benchmark
+    public ResponseEntity<?> getResponse()
+    {
+        return mTable.get(mCountryCode, null);
+    }
+}
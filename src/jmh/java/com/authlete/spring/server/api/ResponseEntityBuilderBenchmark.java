@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.util.concurrent.TimeUnit;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+
+/**
+ * Benchmarks of conversion of JAX-RS responses built by
+ * authlete-java-jakarta to {@link ResponseEntity} instances.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseEntityBuilderBenchmark
+{
+    /**
+     * The kind of the response: an error with a {@code WWW-Authenticate}
+     * header, or a JSON userinfo response.
+     */
+    @Param({ "error", "userinfo" })
+    public String kind;
+
+
+    private Response mResponse;
+    private WebApplicationException mException;
+
+
+    @Setup
+    public void setup()
+    {
+        if ("error".equals(kind))
+        {
+            mResponse = BearerErrors.response(Status.UNAUTHORIZED, BearerErrors.challenge(
+                    "invalid_token", "The access token has expired.", null));
+        }
+        else
+        {
+            mResponse = Response.ok(
+                    "{\"sub\":\"1001\",\"name\":\"John Smith\",\"email\":\"john@example.com\"}",
+                    "application/json;charset=UTF-8")
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                    .header(HttpHeaders.PRAGMA, "no-cache")
+                    .build();
+        }
+
+        mException = new WebApplicationException(mResponse);
+    }
+
+
+    @Benchmark
+    public ResponseEntity<?> response()
+    {
+        return new ResponseEntityBuilder().response(mResponse).build();
+    }
+
+
+    @Benchmark
+    public ResponseEntity<?> exception()
+    {
+        return new ResponseEntityBuilder().exception(mException).build();
+    }
+}
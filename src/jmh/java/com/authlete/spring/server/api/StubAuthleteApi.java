@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import com.authlete.common.api.AuthleteApi;
+import com.authlete.common.api.Settings;
+import com.authlete.common.dto.IntrospectionResponse;
+import com.authlete.common.dto.UserInfoIssueResponse;
+import com.authlete.common.dto.UserInfoResponse;
+
+
+/**
+ * An in-process stub of {@link AuthleteApi} that returns responses
+ * prepared in advance, so that benchmarks measure the code of this
+ * resource server rather than the network.
+ *
+ * <p>
+ * Only the APIs used by protected resource endpoints are supported:
+ * {@code introspection}, {@code userinfo} and {@code userinfoIssue}.
+ * Other APIs throw {@link UnsupportedOperationException}.
+ * </p>
+ */
+final class StubAuthleteApi implements InvocationHandler
+{
+    private final Settings mSettings = new Settings();
+    private final AuthleteApi mProxy;
+    private volatile IntrospectionResponse mIntrospectionResponse;
+    private volatile UserInfoResponse mUserInfoResponse;
+    private volatile UserInfoIssueResponse mUserInfoIssueResponse;
+
+
+    StubAuthleteApi()
+    {
+        mProxy = (AuthleteApi)Proxy.newProxyInstance(
+                AuthleteApi.class.getClassLoader(), new Class<?>[] { AuthleteApi.class }, this);
+    }
+
+
+    /**
+     * Get the {@link AuthleteApi} instance backed by this stub.
+     */
+    AuthleteApi getApi()
+    {
+        return mProxy;
+    }
+
+
+    StubAuthleteApi setIntrospectionResponse(IntrospectionResponse response)
+    {
+        mIntrospectionResponse = response;
+
+        return this;
+    }
+
+
+    StubAuthleteApi setUserInfoResponse(UserInfoResponse response)
+    {
+        mUserInfoResponse = response;
+
+        return this;
+    }
+
+
+    StubAuthleteApi setUserInfoIssueResponse(UserInfoIssueResponse response)
+    {
+        mUserInfoIssueResponse = response;
+
+        return this;
+    }
+
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+    {
+        switch (method.getName())
+        {
+            case "introspection":
+                return mIntrospectionResponse;
+
+            case "userinfo":
+                return mUserInfoResponse;
+
+            case "userinfoIssue":
+                return mUserInfoIssueResponse;
+
+            case "getSettings":
+                return mSettings;
+
+            case "hashCode":
+                return System.identityHashCode(proxy);
+
+            case "equals":
+                return proxy == args[0];
+
+            case "toString":
+                return "StubAuthleteApi";
+
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import com.authlete.common.types.User;
+import com.authlete.jakarta.spi.UserInfoRequestHandlerSpiAdapter;
+import com.authlete.spring.server.db.IndexedUser;
+import com.authlete.spring.server.db.UserClaim;
+import com.authlete.spring.server.db.UserDao;
+
+
+/**
+ * A copy of the shared {@code UserInfoRequestHandlerSpiImpl} that kept the
+ * user of a request in a per-thread context, kept for {@link
+ * UserInfoSpiBenchmark}. Call {@link #clear()} after each request.
+ */
+class ThreadLocalUserInfoRequestHandlerSpi extends UserInfoRequestHandlerSpiAdapter
+{
+    private static final ThreadLocal<Context> sContext = ThreadLocal.withInitial(Context::new);
+
+
+    private final ResourceServerMetrics mResourceServerMetrics;
+
+
+    ThreadLocalUserInfoRequestHandlerSpi(ResourceServerMetrics metrics)
+    {
+        mResourceServerMetrics = metrics;
+    }
+
+
+    @Override
+    public void prepareUserClaims(String subject, String[] claimNames)
+    {
+        long start = System.nanoTime();
+
+        User user = UserDao.getBySubject(subject, claimNames);
+
+        mResourceServerMetrics.recordUserLookup(start, user != null);
+
+        sContext.get().mUser = user;
+    }
+
+
+    void clear()
+    {
+        sContext.get().mUser = null;
+    }
+
+
+    @Override
+    public Object getUserClaim(String claimName, String languageTag)
+    {
+        User user = sContext.get().mUser;
+
+        if (user == null)
+        {
+            return null;
+        }
+
+        if (user instanceof IndexedUser)
+        {
+            UserClaim claim = UserClaim.of(claimName);
+
+            return (claim == null) ? null : ((IndexedUser)user).getClaim(claim, languageTag);
+        }
+
+        return user.getClaim(claimName, languageTag);
+    }
+
+
+    private static final class Context
+    {
+        private User mUser;
+    }
+}
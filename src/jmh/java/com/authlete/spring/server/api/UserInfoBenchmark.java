@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import jakarta.ws.rs.core.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import com.authlete.common.api.AuthleteApi;
+import com.authlete.common.dto.IntrospectionResponse;
+import com.authlete.common.dto.UserInfoIssueResponse;
+import com.authlete.common.dto.UserInfoResponse;
+import com.authlete.jakarta.spi.UserInfoRequestHandlerSpi;
+
+
+/**
+ * Benchmarks of the userinfo endpoint against {@link StubAuthleteApi}.
+ *
+ * <p>
+ * {@code get} runs the whole flow of {@link UserInfoEndpoint}: the
+ * {@code /auth/userinfo} API, collection of the requested claims from
+ * {@code UserDao} and the {@code /auth/userinfo/issue} API. With
+ * {@code cache=true}, successful responses are served from {@link
+ * UserInfoResponseCache}.
+ * </p>
+ *
+ * <p>
+ * {@code handle} runs the handler of authlete-java-jakarta only, with a
+ * {@link UserInfoRequestContext} of the shared {@link
+ * UserInfoRequestHandlerSpiImpl} created per request as the endpoint
+ * does.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserInfoBenchmark
+{
+    private static final String ACCESS_TOKEN = "Ddb4Hh_Fa3SxW9_wQ4Hc_kV2vr3mAx3mPU3b1rLNzqg";
+
+
+    /**
+     * The claims requested by the access token.
+     */
+    @Param({ "name", "name,email", "name,email,address,phone_number,name#ja" })
+    public String claims;
+
+
+    @Param({ "false", "true" })
+    public boolean cache;
+
+
+    private Endpoint mEndpoint;
+    private ResourceServerMetrics mMetrics;
+    private UserInfoRequestHandlerSpiImpl mSpi;
+    private UserInfoResponseCache mUserInfoResponseCache;
+    private String mAuthorization;
+
+
+    @Setup
+    public void setup()
+    {
+        StubAuthleteApi stub = new StubAuthleteApi()
+                .setIntrospectionResponse(introspectionResponse())
+                .setUserInfoResponse(userInfoResponse(claims.split(",")))
+                .setUserInfoIssueResponse(userInfoIssueResponse());
+
+        mMetrics               = BenchmarkSupport.metrics();
+        mSpi                   = new UserInfoRequestHandlerSpiImpl(mMetrics);
+        mUserInfoResponseCache = new UserInfoResponseCache(
+                cache, 10000, Duration.ofSeconds(60), Duration.ofSeconds(10), false);
+
+        mEndpoint = new Endpoint(stub.getApi());
+        BenchmarkSupport.inject(mEndpoint, "mAuthleteApi",               stub.getApi());
+        BenchmarkSupport.inject(mEndpoint, "mAccessTokenPrevalidator",   BenchmarkSupport.prevalidator());
+        BenchmarkSupport.inject(mEndpoint, "mAccessTokenCache",          BenchmarkSupport.accessTokenCache(cache));
+        BenchmarkSupport.inject(mEndpoint, "mUserInfoResponseCache",     mUserInfoResponseCache);
+        BenchmarkSupport.inject(mEndpoint, "mResourceServerMetrics",     mMetrics);
+        BenchmarkSupport.inject(mEndpoint, "mUserInfoRequestHandlerSpi",  mSpi);
+        BenchmarkSupport.inject(mEndpoint, "mJwtAccessTokenValidator",    BenchmarkSupport.disabledJwtAccessTokenValidator());
+        BenchmarkSupport.inject(mEndpoint, "mAuthleteConcurrencyLimiter",
+                BenchmarkSupport.disabledConcurrencyLimiter(mMetrics));
+
+        mAuthorization = "Bearer " + ACCESS_TOKEN;
+    }
+
+
+    @TearDown
+    public void tearDown()
+    {
+        mUserInfoResponseCache.shutdown();
+    }
+
+
+    private static IntrospectionResponse introspectionResponse()
+    {
+        IntrospectionResponse response = new IntrospectionResponse();
+        response.setAction(IntrospectionResponse.Action.OK);
+        response.setSubject("1001");
+        response.setScopes(new String[] { "openid", "profile" });
+        response.setExpiresAt(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+
+        return response;
+    }
+
+
+    static UserInfoResponse userInfoResponse(String[] claimNames)
+    {
+        UserInfoResponse response = new UserInfoResponse();
+        response.setAction(UserInfoResponse.Action.OK);
+        response.setSubject("1001");
+        response.setClaims(claimNames);
+
+        return response;
+    }
+
+
+    static UserInfoIssueResponse userInfoIssueResponse()
+    {
+        UserInfoIssueResponse response = new UserInfoIssueResponse();
+        response.setAction(UserInfoIssueResponse.Action.JSON);
+        response.setResponseContent(
+                "{\"sub\":\"1001\",\"name\":\"John Smith\",\"email\":\"john@example.com\"}");
+
+        return response;
+    }
+
+
+    @Benchmark
+    public ResponseEntity<?> get()
+    {
+        return mEndpoint.get(mAuthorization, null);
+    }
+
+
+    @Benchmark
+    public Response handle()
+    {
+        return mEndpoint.handle(mSpi.newContext(), ACCESS_TOKEN);
+    }
+
+
+    /**
+     * A userinfo endpoint that exposes the handler of authlete-java-jakarta.
+     */
+    static class Endpoint extends UserInfoEndpoint
+    {
+        private final AuthleteApi mApi;
+
+
+        Endpoint(AuthleteApi api)
+        {
+            mApi = api;
+        }
+
+
+        Response handle(UserInfoRequestHandlerSpi spi, String accessToken)
+        {
+            return handle(mApi, spi, accessToken);
+        }
+    }
+}
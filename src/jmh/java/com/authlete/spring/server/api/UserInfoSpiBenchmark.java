@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.util.concurrent.TimeUnit;
+import jakarta.ws.rs.core.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Allocation per userinfo request with each implementation of the
+ * {@code UserInfoRequestHandlerSpi}.
+ *
+ * <ul>
+ *   <li>{@code baseline}: {@link BaselineUserInfoRequestHandlerSpi}, the
+ *       original implementation created per request.</li>
+ *   <li>{@code threadLocal}: {@link ThreadLocalUserInfoRequestHandlerSpi},
+ *       one shared instance with a per-thread context.</li>
+ *   <li>{@code context}: the shared, stateless {@link
+ *       UserInfoRequestHandlerSpiImpl} with a {@link UserInfoRequestContext}
+ *       created per request, the current implementation.</li>
+ * </ul>
+ *
+ * <p>
+ * With {@code thread=virtual}, each request runs on a new virtual thread,
+ * as it does with {@code spring.threads.virtual.enabled=true}, so a
+ * per-thread context is created for every request. The cost of the thread
+ * itself is the same for all the implementations. Compare {@code
+ * gc.alloc.rate.norm} (bytes per operation) of the GC profiler.
+ * </p>
+ *
+ * <pre>
+ * $ mvn -Pjmh test-compile exec:exec -Djmh.args="UserInfoSpi -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserInfoSpiBenchmark
+{
+    private static final String ACCESS_TOKEN = "Ddb4Hh_Fa3SxW9_wQ4Hc_kV2vr3mAx3mPU3b1rLNzqg";
+
+
+    @Param({ "baseline", "threadLocal", "context" })
+    public String spi;
+
+
+    @Param({ "platform", "virtual" })
+    public String thread;
+
+
+    @Param({ "name,email,address,phone_number" })
+    public String claims;
+
+
+    private UserInfoBenchmark.Endpoint mEndpoint;
+    private UserInfoRequestHandlerSpiImpl mSharedSpi;
+    private ThreadLocalUserInfoRequestHandlerSpi mThreadLocalSpi;
+    private boolean mVirtual;
+
+
+    @Setup
+    public void setup()
+    {
+        StubAuthleteApi stub = new StubAuthleteApi()
+                .setUserInfoResponse(UserInfoBenchmark.userInfoResponse(claims.split(",")))
+                .setUserInfoIssueResponse(UserInfoBenchmark.userInfoIssueResponse());
+
+        ResourceServerMetrics metrics = BenchmarkSupport.metrics();
+
+        mEndpoint       = new UserInfoBenchmark.Endpoint(stub.getApi());
+        mSharedSpi      = new UserInfoRequestHandlerSpiImpl(metrics);
+        mThreadLocalSpi = new ThreadLocalUserInfoRequestHandlerSpi(metrics);
+        mVirtual        = "virtual".equals(thread);
+    }
+
+
+    @Benchmark
+    public Response handle() throws InterruptedException
+    {
+        if (!mVirtual)
+        {
+            return handleRequest();
+        }
+
+        Response[] response = new Response[1];
+
+        Thread.ofVirtual().start(() -> response[0] = handleRequest()).join();
+
+        return response[0];
+    }
+
+
+    private Response handleRequest()
+    {
+        switch (spi)
+        {
+            case "baseline":
+                return mEndpoint.handle(new BaselineUserInfoRequestHandlerSpi(), ACCESS_TOKEN);
+
+            case "threadLocal":
+                try
+                {
+                    return mEndpoint.handle(mThreadLocalSpi, ACCESS_TOKEN);
+                }
+                finally
+                {
+                    mThreadLocalSpi.clear();
+                }
+
+            default:
+                return mEndpoint.handle(mSharedSpi.newContext(), ACCESS_TOKEN);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.util.concurrent.TimeUnit;
+import jakarta.ws.rs.WebApplicationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.authlete.common.dto.IntrospectionResponse;
+
+
+/**
+ * Benchmarks of {@code SpringResourceEndpoint.validateAccessToken}
+ * against {@link StubAuthleteApi}.
+ *
+ * <p>
+ * With {@code cache=true}, the introspection cache and the cache of
+ * rejected access tokens are enabled, so the benchmark measures hits.
+ * With {@code cache=false}, every validation goes through the stub
+ * {@code /auth/introspection} API and the conversion of its response.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidateAccessTokenBenchmark
+{
+    private static final String ACCESS_TOKEN = "Ddb4Hh_Fa3SxW9_wQ4Hc_kV2vr3mAx3mPU3b1rLNzqg";
+
+
+    /**
+     * The validity of the access token. A malformed access token is
+     * rejected without introspection.
+     */
+    @Param({ "valid", "expired", "invalid", "malformed" })
+    public String validity;
+
+
+    @Param({ "true", "false" })
+    public boolean cache;
+
+
+    private Endpoint mEndpoint;
+    private String mAuthorization;
+
+
+    @Setup
+    public void setup()
+    {
+        StubAuthleteApi stub = new StubAuthleteApi()
+                .setIntrospectionResponse(introspectionResponse(validity));
+
+        ResourceServerMetrics metrics = BenchmarkSupport.metrics();
+
+        mEndpoint = new Endpoint();
+
+        BenchmarkSupport.inject(mEndpoint, "mAuthleteApi",                stub.getApi());
+        BenchmarkSupport.inject(mEndpoint, "mAccessTokenPrevalidator",    BenchmarkSupport.prevalidator());
+        BenchmarkSupport.inject(mEndpoint, "mAccessTokenCache",           BenchmarkSupport.accessTokenCache(cache));
+        BenchmarkSupport.inject(mEndpoint, "mJwtAccessTokenValidator",    BenchmarkSupport.disabledJwtAccessTokenValidator());
+        BenchmarkSupport.inject(mEndpoint, "mRejectedAccessTokenCache",   BenchmarkSupport.rejectedAccessTokenCache(cache));
+        BenchmarkSupport.inject(mEndpoint, "mResourceServerMetrics",      metrics);
+        BenchmarkSupport.inject(mEndpoint, "mAuthleteConcurrencyLimiter", BenchmarkSupport.disabledConcurrencyLimiter(metrics));
+        BenchmarkSupport.inject(mEndpoint, "mIntrospections",             new SingleFlight());
+
+        mAuthorization = "Bearer " + ("malformed".equals(validity) ? "not!a!token" : ACCESS_TOKEN);
+    }
+
+
+    private static IntrospectionResponse introspectionResponse(String validity)
+    {
+        IntrospectionResponse response = new IntrospectionResponse();
+
+        switch (validity)
+        {
+            case "valid":
+                response.setAction(IntrospectionResponse.Action.OK);
+                response.setSubject("1001");
+                response.setClientId(57297408867L);
+                response.setScopes(new String[] { "openid", "profile" });
+                response.setExpiresAt(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+                break;
+
+            case "expired":
+                response.setAction(IntrospectionResponse.Action.UNAUTHORIZED);
+                response.setResponseContent(BearerErrors.challenge(
+                        "invalid_token", "The access token has expired.", null));
+                break;
+
+            default:
+                response.setAction(IntrospectionResponse.Action.UNAUTHORIZED);
+                response.setResponseContent(BearerErrors.challenge(
+                        "invalid_token", "The access token does not exist.", null));
+                break;
+        }
+
+        return response;
+    }
+
+
+    @Benchmark
+    public String extractAccessToken()
+    {
+        return mEndpoint.extract(mAuthorization);
+    }
+
+
+    @Benchmark
+    public Object validateAccessToken()
+    {
+        try
+        {
+            return mEndpoint.validate(mEndpoint.extract(mAuthorization));
+        }
+        catch (WebApplicationException e)
+        {
+            return e;
+        }
+    }
+
+
+    /**
+     * A resource endpoint that exposes the protected methods.
+     */
+    static class Endpoint extends SpringResourceEndpoint
+    {
+        String extract(String authorization)
+        {
+            return extractAccessToken(authorization, null);
+        }
+
+
+        Object validate(String accessToken)
+        {
+            return validateAccessToken(accessToken, new String[] { "openid" });
+        }
+    }
+}
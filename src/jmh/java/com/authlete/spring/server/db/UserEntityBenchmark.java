@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.authlete.common.dto.Address;
+
+
+/**
+ * Benchmarks of {@code UserEntity.getClaim}, by claim name and by
+ * {@link UserClaim}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserEntityBenchmark
+{
+    /**
+     * The claims requested at a time.
+     */
+    @Param({ "name", "name,email", "name,email,address,phone_number" })
+    public String claims;
+
+
+    private UserEntity mEntity;
+    private String[] mClaimNames;
+    private UserClaim[] mClaims;
+
+
+    @Setup
+    public void setup()
+    {
+        mEntity = new UserEntity("1001", "John Smith", "john@example.com",
+                new Address().setCountry("USA"), "+1 (425) 555-1212")
+                .setClaim(UserClaim.NAME, "ja", "ジョン・スミス");
+
+        mClaimNames = claims.split(",");
+        mClaims     = new UserClaim[mClaimNames.length];
+
+        for (int i = 0; i < mClaimNames.length; i++)
+        {
+            mClaims[i] = UserClaim.of(mClaimNames[i]);
+        }
+    }
+
+
+    @Benchmark
+    public void getClaimByName(Blackhole blackhole)
+    {
+        for (String claimName : mClaimNames)
+        {
+            blackhole.consume(mEntity.getClaim(claimName, null));
+        }
+    }
+
+
+    @Benchmark
+    public void getClaimByIndex(Blackhole blackhole)
+    {
+        for (UserClaim claim : mClaims)
+        {
+            blackhole.consume(mEntity.getClaim(claim, null));
+        }
+    }
+
+
+    @Benchmark
+    public void getLocalizedClaimByIndex(Blackhole blackhole)
+    {
+        for (UserClaim claim : mClaims)
+        {
+            blackhole.consume(mEntity.getClaim(claim, "ja"));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.authlete.common.types.User;
+
+
+/**
+ * Benchmarks of {@code UserDao.getBySubject} backed by a {@link
+ * HeapUserStore} or a {@link MappedUserStore} of different sizes.
+ *
+ * <p>
+ * Users are generated into a temporary CSV file, which is loaded in the
+ * same way as {@code user.store.file}. Lookups are spread randomly over
+ * the users, and one in eight of them is for an unknown subject. The
+ * largest heap store needs a few gigabytes of heap, which is given by
+ * {@code @Fork}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserStoreBenchmark
+{
+    private static final int LOOKUPS = 4096;
+
+
+    @Param({ "1000", "1000000", "10000000" })
+    public int users;
+
+
+    @Param({ "heap", "mapped" })
+    public String type;
+
+
+    private Path mCsv;
+    private Path mMapped;
+    private String[] mSubjects;
+    private String[] mClaimNames;
+    private int mNext;
+
+
+    @Setup
+    public void setup() throws IOException
+    {
+        mCsv = Files.createTempFile("users-", ".csv");
+        writeUsers(mCsv, users);
+
+        UserStore store;
+
+        if ("mapped".equals(type))
+        {
+            mMapped = Files.createTempFile("users-", ".bin");
+            MappedUserStoreWriter.write(mCsv, mMapped);
+            store = MappedUserStore.open(mMapped);
+        }
+        else
+        {
+            store = UserCsvReader.read(mCsv);
+        }
+
+        UserDao.setRepository(store);
+
+        SplittableRandom random = new SplittableRandom(42);
+        mSubjects = new String[LOOKUPS];
+
+        for (int i = 0; i < LOOKUPS; i++)
+        {
+            mSubjects[i] = (i % 8 == 7) ? "unknown-" + i : subject(random.nextInt(users));
+        }
+
+        mClaimNames = new String[] { "name", "email" };
+    }
+
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        UserDao.setRepository(null);
+
+        Files.deleteIfExists(mCsv);
+
+        if (mMapped != null)
+        {
+            Files.deleteIfExists(mMapped);
+        }
+    }
+
+
+    private static void writeUsers(Path file, int users) throws IOException
+    {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+        {
+            writer.write("subject,name,email,country,phone_number\n");
+
+            for (int i = 0; i < users; i++)
+            {
+                writer.write(subject(i));
+                writer.write(",User ");
+                writer.write(Integer.toString(i));
+                writer.write(",user");
+                writer.write(Integer.toString(i));
+                writer.write("@example.com,Japan,+81 3 5555 ");
+                writer.write(Integer.toString(i % 10000));
+                writer.write('\n');
+            }
+        }
+    }
+
+
+    private static String subject(int index)
+    {
+        return Integer.toString(100000000 + index);
+    }
+
+
+    private String nextSubject()
+    {
+        return mSubjects[mNext++ & (LOOKUPS - 1)];
+    }
+
+
+    @Benchmark
+    public User getBySubject()
+    {
+        return UserDao.getBySubject(nextSubject());
+    }
+
+
+    @Benchmark
+    public User getBySubjectWithClaimNames()
+    {
+        return UserDao.getBySubject(nextSubject(), mClaimNames);
+    }
+}
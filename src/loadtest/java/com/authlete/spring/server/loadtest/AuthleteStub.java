@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.loadtest;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * A local stub of the Authlete APIs used by the resource server:
+ * {@code /api/auth/introspection}, {@code /api/auth/userinfo} and
+ * {@code /api/auth/userinfo/issue}.
+ *
+ * <p>
+ * Every access token is valid, belongs to the user {@code "1001"} and
+ * has the {@code openid} scope. Each response is delayed by the base
+ * latency plus a random jitter, and a fraction of the calls fails with
+ * {@code 500 Internal Server Error}. Requests are handled by virtual
+ * threads, so the latency of the stub does not limit its throughput.
+ * </p>
+ */
+public class AuthleteStub
+{
+    private final Duration mLatency;
+    private final Duration mJitter;
+    private final double mErrorRate;
+    private final String mUserInfoClaims;
+    private final AtomicLong mCalls  = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+    private HttpServer mServer;
+    private ExecutorService mExecutor;
+
+
+    /**
+     * Constructor.
+     *
+     * @param latency
+     *         The base latency of the APIs.
+     *
+     * @param jitter
+     *         The maximum random latency added to the base latency.
+     *
+     * @param errorRate
+     *         The fraction of calls that fail, from 0.0 to 1.0.
+     *
+     * @param claims
+     *         The names of the claims requested by access tokens, which
+     *         are returned from the {@code /api/auth/userinfo} API.
+     */
+    public AuthleteStub(Duration latency, Duration jitter, double errorRate, String[] claims)
+    {
+        mLatency        = latency;
+        mJitter         = jitter;
+        mErrorRate      = errorRate;
+        mUserInfoClaims = toJsonArray(claims);
+    }
+
+
+    /**
+     * Start the stub on an ephemeral port of the loopback address.
+     *
+     * @return
+     *         The base URL of the stub, e.g. {@code http://127.0.0.1:50123}.
+     */
+    public String start() throws IOException
+    {
+        mExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        mServer   = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+
+        mServer.setExecutor(mExecutor);
+        mServer.createContext("/api/auth/introspection", exchange -> handle(exchange, this::introspection));
+        mServer.createContext("/api/auth/userinfo/issue", exchange -> handle(exchange, this::userinfoIssue));
+        mServer.createContext("/api/auth/userinfo",       exchange -> handle(exchange, this::userinfo));
+        mServer.start();
+
+        return "http://127.0.0.1:" + mServer.getAddress().getPort();
+    }
+
+
+    /**
+     * Stop the stub.
+     */
+    public void stop()
+    {
+        if (mServer != null)
+        {
+            mServer.stop(0);
+            mExecutor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Get the number of API calls so far.
+     */
+    public long getCalls()
+    {
+        return mCalls.get();
+    }
+
+
+    /**
+     * Get the number of API calls that failed by error injection so far.
+     */
+    public long getErrors()
+    {
+        return mErrors.get();
+    }
+
+
+    private void handle(HttpExchange exchange, Supplier<String> content) throws IOException
+    {
+        try (exchange)
+        {
+            // Consume the request so that the connection can be reused.
+            try (InputStream in = exchange.getRequestBody())
+            {
+                in.readAllBytes();
+            }
+
+            mCalls.incrementAndGet();
+            delay();
+
+            if (mErrorRate > 0 && ThreadLocalRandom.current().nextDouble() < mErrorRate)
+            {
+                mErrors.incrementAndGet();
+                send(exchange, 500,
+                        "{\"resultCode\":\"A001001\",\"resultMessage\":\"[A001001] Injected error.\"}");
+                return;
+            }
+
+            send(exchange, 200, content.get());
+        }
+    }
+
+
+    private void delay()
+    {
+        long nanos = mLatency.toNanos();
+
+        if (!mJitter.isZero())
+        {
+            nanos += ThreadLocalRandom.current().nextLong(mJitter.toNanos() + 1);
+        }
+
+        if (nanos <= 0)
+        {
+            return;
+        }
+
+        try
+        {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException
+    {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(body);
+        }
+    }
+
+
+    private String introspection()
+    {
+        // Valid for another hour, so that caches keep the result.
+        long expiresAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+
+        return "{\"resultCode\":\"A056001\",\"resultMessage\":\"[A056001] The access token is valid.\"," +
+               "\"action\":\"OK\",\"clientId\":57297408867,\"subject\":\"1001\"," +
+               "\"scopes\":[\"openid\",\"profile\"],\"existent\":true,\"usable\":true," +
+               "\"sufficient\":true,\"expiresAt\":" + expiresAt + "}";
+    }
+
+
+    private String userinfo()
+    {
+        return "{\"resultCode\":\"A091001\",\"resultMessage\":\"[A091001] The access token is valid.\"," +
+               "\"action\":\"OK\",\"clientId\":57297408867,\"subject\":\"1001\"," +
+               "\"scopes\":[\"openid\",\"profile\"],\"claims\":" + mUserInfoClaims + "}";
+    }
+
+
+    private String userinfoIssue()
+    {
+        String content = "{\\\"sub\\\":\\\"1001\\\",\\\"name\\\":\\\"John Smith\\\"," +
+                         "\\\"email\\\":\\\"john@example.com\\\"}";
+
+        return "{\"resultCode\":\"A092001\",\"resultMessage\":\"[A092001] The userinfo response was built.\"," +
+               "\"action\":\"JSON\",\"responseContent\":\"" + content + "\"}";
+    }
+
+
+    private static String toJsonArray(String[] values)
+    {
+        StringBuilder sb = new StringBuilder("[");
+
+        for (int i = 0; i < values.length; i++)
+        {
+            if (i != 0)
+            {
+                sb.append(',');
+            }
+
+            sb.append('"').append(values[i]).append('"');
+        }
+
+        return sb.append(']').toString();
+    }
+}
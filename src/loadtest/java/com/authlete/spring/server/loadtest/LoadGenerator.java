@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.loadtest;
+
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+
+/**
+ * A generator of HTTP requests at a fixed arrival rate.
+ *
+ * <p>
+ * Requests are sent on schedule whether or not the previous requests
+ * have completed (an open workload model), and the latency of a request
+ * is measured from the time when it should have been sent. Therefore,
+ * when the server falls behind, the waiting time is included in the
+ * latencies instead of being hidden (coordinated omission).
+ * </p>
+ */
+public class LoadGenerator
+{
+    private final HttpClient mClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+
+    /**
+     * Send requests at a fixed rate and record their latencies.
+     *
+     * @param requests
+     *         A function that builds the n-th request.
+     *
+     * @param rate
+     *         The number of requests per second.
+     *
+     * @param duration
+     *         How long requests are sent.
+     *
+     * @return
+     *         The result.
+     */
+    public Result run(LongFunction<HttpRequest> requests, int rate, Duration duration)
+    {
+        Result result  = new Result();
+        long interval  = TimeUnit.SECONDS.toNanos(1) / rate;
+        long count     = duration.toNanos() / interval;
+        long start     = System.nanoTime();
+
+        for (long i = 0; i < count; i++)
+        {
+            long intended = start + i * interval;
+            long delay    = intended - System.nanoTime();
+
+            if (delay > 0)
+            {
+                LockSupport.parkNanos(delay);
+            }
+
+            mClient.sendAsync(requests.apply(i), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> result.record(intended, response, error));
+        }
+
+        // Wait for the requests in flight. They end at the latest when
+        // they time out.
+        while (result.mHistogram.getTotalCount() < count)
+        {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        result.mElapsedNanos = System.nanoTime() - start;
+
+        return result;
+    }
+
+
+    /**
+     * The result of a run.
+     */
+    public static class Result
+    {
+        private final Histogram mHistogram = new ConcurrentHistogram(3);
+        private final AtomicLong mSuccesses = new AtomicLong();
+        private final AtomicLong mErrorResponses = new AtomicLong();
+        private final AtomicLong mFailures = new AtomicLong();
+        private long mElapsedNanos;
+
+
+        private void record(long intended, HttpResponse<?> response, Throwable error)
+        {
+            mHistogram.recordValue(System.nanoTime() - intended);
+
+            if (error != null)
+            {
+                mFailures.incrementAndGet();
+            }
+            else if (response.statusCode() < 400)
+            {
+                mSuccesses.incrementAndGet();
+            }
+            else
+            {
+                mErrorResponses.incrementAndGet();
+            }
+        }
+
+
+        /**
+         * Get the latencies in nanoseconds.
+         */
+        public Histogram getHistogram()
+        {
+            return mHistogram;
+        }
+
+
+        /**
+         * Get the number of responses whose status code is less than 400.
+         */
+        public long getSuccesses()
+        {
+            return mSuccesses.get();
+        }
+
+
+        /**
+         * Get the number of responses whose status code is 400 or greater.
+         */
+        public long getErrorResponses()
+        {
+            return mErrorResponses.get();
+        }
+
+
+        /**
+         * Get the number of requests that failed without a response,
+         * e.g. because of a timeout.
+         */
+        public long getFailures()
+        {
+            return mFailures.get();
+        }
+
+
+        /**
+         * Get the achieved throughput in requests per second.
+         */
+        public double getThroughput()
+        {
+            return mHistogram.getTotalCount() * 1e9 / mElapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.loadtest;
+
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import com.authlete.spring.server.ResourceServer;
+
+
+/**
+ * A load test of the whole resource server.
+ *
+ * <p>
+ * {@link ResourceServer} is booted on an ephemeral port against {@link
+ * AuthleteStub}, and {@link LoadGenerator} sends requests to the country
+ * endpoint and the userinfo endpoint at a fixed arrival rate. A report
+ * of latency percentiles is written per endpoint in the HdrHistogram
+ * format ({@code .hgrm}), which can be plotted with HdrHistogram's
+ * histogram plotter to compare runs.
+ * </p>
+ *
+ * <p>
+ * The arguments are passed to {@code ResourceServer} as they are, so
+ * any setting in {@code application.properties} can be changed per run,
+ * e.g. {@code --spring.threads.virtual.enabled=true}. The settings of the
+ * load test itself are read from the same arguments:
+ * </p>
+ *
+ * <table border="1" cellpadding="5" style="border-collapse: collapse;">
+ *   <tr><th>Argument</th><th>Default</th><th>Description</th></tr>
+ *   <tr><td>{@code --loadtest.targets}</td><td>{@code country,userinfo}</td>
+ *       <td>The endpoints to test, one after another.</td></tr>
+ *   <tr><td>{@code --loadtest.rate}</td><td>{@code 500}</td>
+ *       <td>Requests per second.</td></tr>
+ *   <tr><td>{@code --loadtest.warmup}</td><td>{@code 10s}</td>
+ *       <td>Duration of the warmup run, whose results are discarded.</td></tr>
+ *   <tr><td>{@code --loadtest.duration}</td><td>{@code 30s}</td>
+ *       <td>Duration of the measured run.</td></tr>
+ *   <tr><td>{@code --loadtest.tokens}</td><td>{@code 1000}</td>
+ *       <td>The number of distinct access tokens used in turn.</td></tr>
+ *   <tr><td>{@code --loadtest.claims}</td><td>{@code name,email}</td>
+ *       <td>The claims requested by the access tokens.</td></tr>
+ *   <tr><td>{@code --loadtest.stub.latency}</td><td>{@code 20ms}</td>
+ *       <td>The base latency of the Authlete APIs.</td></tr>
+ *   <tr><td>{@code --loadtest.stub.jitter}</td><td>{@code 10ms}</td>
+ *       <td>The maximum random latency added to the base latency.</td></tr>
+ *   <tr><td>{@code --loadtest.stub.error-rate}</td><td>{@code 0}</td>
+ *       <td>The fraction of Authlete API calls that fail.</td></tr>
+ *   <tr><td>{@code --loadtest.threads}</td><td>-</td>
+ *       <td>Threading models to compare, e.g. {@code platform,virtual}.
+ *       The resource server is booted once per model with {@code
+ *       spring.threads.virtual.enabled} set accordingly, and the same
+ *       load is applied to each. If not given, the resource server is
+ *       booted once with the arguments as they are.</td></tr>
+ *   <tr><td>{@code --loadtest.output}</td><td>{@code target/loadtest}</td>
+ *       <td>The directory of the reports.</td></tr>
+ * </table>
+ *
+ * <p>
+ * To measure the concurrency gain of virtual threads, offer more
+ * concurrent requests than the thread pool of Tomcat has threads, i.e.
+ * make {@code rate * latency} larger than {@code server.tomcat.threads.max}
+ * (200 by default), and let every request reach the stub:
+ * </p>
+ *
+ * <pre>
+ * --loadtest.threads=platform,virtual --loadtest.rate=4000
+ * --loadtest.stub.latency=100ms --loadtest.stub.jitter=0ms
+ * --token.cache.enabled=false --authlete.http.max-connections=1000
+ * </pre>
+ *
+ * <p>
+ * About 400 requests are then in flight. With platform threads, the
+ * throughput is capped at about {@code threads / latency} and requests
+ * queue up in Tomcat, which shows as latency growing over the run. With
+ * virtual threads, the cap is the pool of connections to the Authlete
+ * server ({@code authlete.http.max-connections}).
+ * </p>
+ */
+public class LoadTest
+{
+    private static final String[] COUNTRY_CODES = { "JP", "US", "DE", "FR", "GB", "CL", "392", "USA" };
+    private static final String VIRTUAL_THREADS = "spring.threads.virtual.enabled";
+
+
+    public static void main(String[] args) throws Exception
+    {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+
+        String[] targets   = get(options, "loadtest.targets", "country,userinfo").split(",");
+        int      rate      = Integer.parseInt(get(options, "loadtest.rate", "500"));
+        Duration warmup    = DurationStyle.detectAndParse(get(options, "loadtest.warmup", "10s"));
+        Duration duration  = DurationStyle.detectAndParse(get(options, "loadtest.duration", "30s"));
+        int      tokens    = Integer.parseInt(get(options, "loadtest.tokens", "1000"));
+        String[] claims    = get(options, "loadtest.claims", "name,email").split(",");
+        Duration latency   = DurationStyle.detectAndParse(get(options, "loadtest.stub.latency", "20ms"));
+        Duration jitter    = DurationStyle.detectAndParse(get(options, "loadtest.stub.jitter", "10ms"));
+        double   errorRate = Double.parseDouble(get(options, "loadtest.stub.error-rate", "0"));
+        Path     output    = Paths.get(get(options, "loadtest.output", "target/loadtest"));
+        String   threads   = options.getProperty("loadtest.threads");
+
+        AuthleteStub stub = new AuthleteStub(latency, jitter, errorRate, claims);
+        String baseUrl = stub.start();
+
+        // Let the resource server call the stub.
+        System.setProperty("authlete.configuration.file", writeAuthleteProperties(baseUrl).toString());
+
+        Files.createDirectories(output);
+
+        try
+        {
+            if (threads == null)
+            {
+                run(stub, withServerPort(options, args), null,
+                        targets, rate, warmup, duration, tokens, output);
+                return;
+            }
+
+            // The same load for each threading model.
+            for (String model : threads.split(","))
+            {
+                model = model.trim();
+
+                run(stub, withServerPort(options, withThreads(args, model)), model,
+                        targets, rate, warmup, duration, tokens, output);
+            }
+        }
+        finally
+        {
+            stub.stop();
+        }
+    }
+
+
+    private static void run(
+            AuthleteStub stub, String[] args, String model, String[] targets, int rate,
+            Duration warmup, Duration duration, int tokens, Path output) throws IOException
+    {
+        ConfigurableApplicationContext context = SpringApplication.run(ResourceServer.class, args);
+
+        try
+        {
+            String server = "http://127.0.0.1:" +
+                    context.getEnvironment().getProperty("local.server.port");
+
+            LoadGenerator generator = new LoadGenerator();
+
+            for (String target : targets)
+            {
+                LongFunction<HttpRequest> requests = requests(server, target.trim(), tokens);
+
+                // Let JIT compilation, caches and connection pools warm up.
+                generator.run(requests, rate, warmup);
+
+                long calls = stub.getCalls();
+                LoadGenerator.Result result = generator.run(requests, rate, duration);
+
+                String name = (model == null) ? target.trim() : target.trim() + "-" + model;
+
+                report(output, name, rate, result, stub.getCalls() - calls);
+            }
+        }
+        finally
+        {
+            context.close();
+        }
+    }
+
+
+    private static String get(SimpleCommandLinePropertySource options, String name, String defaultValue)
+    {
+        String value = options.getProperty(name);
+
+        return (value != null) ? value : defaultValue;
+    }
+
+
+    private static String[] withServerPort(SimpleCommandLinePropertySource options, String[] args)
+    {
+        if (options.containsProperty("server.port"))
+        {
+            return args;
+        }
+
+        String[] result = new String[args.length + 1];
+
+        // Any free port.
+        result[0] = "--server.port=0";
+        System.arraycopy(args, 0, result, 1, args.length);
+
+        return result;
+    }
+
+
+    /**
+     * Replace {@code --spring.threads.virtual.enabled} in the arguments
+     * with the value for the threading model.
+     */
+    private static String[] withThreads(String[] args, String model)
+    {
+        boolean virtual;
+
+        switch (model)
+        {
+            case "platform":
+                virtual = false;
+                break;
+
+            case "virtual":
+                virtual = true;
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown threading model: " + model);
+        }
+
+        List<String> result = new ArrayList<String>(args.length + 1);
+
+        for (String arg : args)
+        {
+            // A repeated option would be read as "false,true".
+            if (!arg.startsWith("--" + VIRTUAL_THREADS + "="))
+            {
+                result.add(arg);
+            }
+        }
+
+        result.add("--" + VIRTUAL_THREADS + "=" + virtual);
+
+        return result.toArray(new String[result.size()]);
+    }
+
+
+    private static Path writeAuthleteProperties(String baseUrl) throws IOException
+    {
+        Path file = Files.createTempFile("authlete-", ".properties");
+        file.toFile().deleteOnExit();
+
+        Files.writeString(file,
+                "base_url = " + baseUrl + "\n" +
+                "service.api_key = 5593494639\n" +
+                "service.api_secret = loadtest\n",
+                StandardCharsets.UTF_8);
+
+        return file;
+    }
+
+
+    private static LongFunction<HttpRequest> requests(String server, String target, int tokens)
+    {
+        switch (target)
+        {
+            case "country":
+                return i -> request(server + "/api/country/" +
+                        COUNTRY_CODES[(int)(i % COUNTRY_CODES.length)], i, tokens);
+
+            case "userinfo":
+                return i -> request(server + "/api/userinfo", i, tokens);
+
+            default:
+                throw new IllegalArgumentException("Unknown target: " + target);
+        }
+    }
+
+
+    private static HttpRequest request(String uri, long i, int tokens)
+    {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Authorization", "Bearer loadtest-token-" + (i % tokens))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+
+    private static void report(
+            Path output, String target, int rate, LoadGenerator.Result result,
+            long authleteCalls) throws IOException
+    {
+        Path file = output.resolve(target + ".hgrm");
+
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8))
+        {
+            // In milliseconds.
+            result.getHistogram().outputPercentileDistribution(out, 1e6);
+        }
+
+        System.out.printf(
+                "%s: rate=%d/s throughput=%.1f/s ok=%d errors=%d failures=%d authlete-calls=%d%n" +
+                "  p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms (%s)%n",
+                target, rate, result.getThroughput(),
+                result.getSuccesses(), result.getErrorResponses(), result.getFailures(), authleteCalls,
+                percentile(result, 50), percentile(result, 90), percentile(result, 99),
+                percentile(result, 99.9), result.getHistogram().getMaxValue() / 1e6, file);
+    }
+
+
+    private static double percentile(LoadGenerator.Result result, double percentile)
+    {
+        return result.getHistogram().getValueAtPercentile(percentile) / 1e6;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server;
+
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.glassfish.jersey.apache5.connector.Apache5ClientProperties;
+import org.glassfish.jersey.apache5.connector.Apache5ConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import com.authlete.common.api.AuthleteApi;
+import com.authlete.common.api.AuthleteApiFactory;
+import com.authlete.common.conf.AuthletePropertiesConfiguration;
+import com.authlete.jakarta.api.AuthleteApiJaxrsImpl;
+import com.authlete.spring.server.api.ResourceServerMetrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+
+
+/**
+ * Configuration of the {@link AuthleteApi} instance shared by endpoints.
+ *
+ * <p>
+ * The settings of the Authlete server are read from {@code
+ * authlete.properties} as before. The settings of the HTTP client used
+ * to call the Authlete APIs are read from {@code application.properties}
+ * ({@code authlete.http.*}).
+ * </p>
+ */
+@Configuration
+public class AuthleteApiConfiguration
+{
+    /**
+     * The pool of HTTP connections to the Authlete server.
+     *
+     * <p>
+     * Connections are kept alive and reused across requests, which saves
+     * a TCP (and TLS) handshake per API call. Statistics of the pool are
+     * published as metrics by {@link #authleteConnectionPoolMetrics(
+     * PoolingHttpClientConnectionManager)}.
+     * </p>
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager authleteConnectionManager(
+            @Value("${authlete.http.max-connections:200}") int maxConnections,
+            @Value("${authlete.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${authlete.http.read-timeout:10s}") Duration readTimeout,
+            @Value("${authlete.http.keep-alive:60s}") Duration keepAlive)
+    {
+        ConnectionConfig config = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(readTimeout))
+                .setTimeToLive(TimeValue.of(keepAlive))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build();
+
+        // All the connections go to the same Authlete server, so the
+        // limit per route is the same as the total limit.
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(config)
+                .build();
+    }
+
+
+    /**
+     * Metrics of the pool of HTTP connections to the Authlete server,
+     * e.g. {@code httpcomponents.httpclient.pool.total.connections}.
+     */
+    @Bean
+    public MeterBinder authleteConnectionPoolMetrics(
+            PoolingHttpClientConnectionManager connectionManager)
+    {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(
+                connectionManager, "authlete");
+    }
+
+
+    /**
+     * The {@link AuthleteApi} instance.
+     *
+     * <p>
+     * The instance is created once here. Endpoints get it injected instead
+     * of calling {@link AuthleteApiFactory#getDefaultApi()}, which is a
+     * {@code synchronized} method, on every request. This matters when
+     * requests are handled by virtual threads
+     * ({@code spring.threads.virtual.enabled=true}).
+     * </p>
+     *
+     * <p>
+     * When the implementation is based on a JAX-RS client, the client uses
+     * the pooled connections of {@link #authleteConnectionManager(int,
+     * Duration, Duration, Duration) authleteConnectionManager()} instead
+     * of opening a connection per call.
+     * </p>
+     *
+     * <p>
+     * Calls of the APIs are timed by {@link ResourceServerMetrics}.
+     * </p>
+     */
+    @Bean
+    public AuthleteApi authleteApi(
+            PoolingHttpClientConnectionManager connectionManager,
+            ResourceServerMetrics metrics,
+            @Value("${authlete.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${authlete.http.read-timeout:10s}") Duration readTimeout)
+    {
+        AuthleteApi api = AuthleteApiFactory.create(new AuthletePropertiesConfiguration());
+
+        api.getSettings()
+            .setConnectionTimeout((int)connectTimeout.toMillis())
+            .setReadTimeout((int)readTimeout.toMillis());
+
+        if (api instanceof AuthleteApiJaxrsImpl)
+        {
+            ClientConfig config = new ClientConfig()
+                    .connectorProvider(new Apache5ConnectorProvider())
+                    .property(Apache5ClientProperties.CONNECTION_MANAGER, connectionManager)
+                    .property(Apache5ClientProperties.CONNECTION_MANAGER_SHARED, true)
+                    .property(ClientProperties.CONNECT_TIMEOUT, (int)connectTimeout.toMillis())
+                    .property(ClientProperties.READ_TIMEOUT, (int)readTimeout.toMillis());
+
+            ((AuthleteApiJaxrsImpl)api).setJaxRsClientBuilder(
+                    ClientBuilder.newBuilder()
+                        .withConfig(config)
+                        .connectTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        return metrics.instrument(api);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server;
+
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import com.authlete.spring.server.db.FileUserStore;
+import com.authlete.spring.server.db.JdbcUserRepository;
+import com.authlete.spring.server.db.MappedUserStore;
+import com.authlete.spring.server.db.UserCsvReader;
+import com.authlete.spring.server.db.UserDao;
+
+
+/**
+ * Configuration of the user repository used by {@link UserDao}.
+ *
+ * <p>
+ * When {@code user.store.type} is not {@code jdbc} and {@code
+ * user.store.file} is not set, {@link UserDao} keeps using its dummy
+ * user database.
+ * </p>
+ */
+@Configuration
+public class UserStoreConfiguration
+{
+    /**
+     * The user store loaded from {@code user.store.file}. The store is
+     * installed into {@link UserDao} when it is created.
+     *
+     * <p>
+     * When {@code user.store.type} is {@code heap} (default), the file is
+     * a CSV file and the users are loaded into the heap. When it is {@code
+     * mapped}, the file is a binary file written by {@link
+     * com.authlete.spring.server.db.MappedUserStoreWriter
+     * MappedUserStoreWriter} and it is mapped into memory.
+     * </p>
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnExpression("!'${user.store.file:}'.isEmpty() and '${user.store.type:heap}' != 'jdbc'")
+    public FileUserStore fileUserStore(
+            @Value("${user.store.file}") String file,
+            @Value("${user.store.reload-interval:30s}") Duration reloadInterval,
+            @Value("${user.store.type:heap}") String type)
+    {
+        FileUserStore.Loader loader;
+
+        switch (type)
+        {
+            case "heap":
+                loader = UserCsvReader::read;
+                break;
+
+            case "mapped":
+                loader = MappedUserStore::open;
+                break;
+
+            default:
+                throw new IllegalArgumentException(
+                        "Unsupported user.store.type: " + type + " (heap, mapped or jdbc)");
+        }
+
+        FileUserStore store = new FileUserStore(Paths.get(file), reloadInterval, loader);
+
+        UserDao.setRepository(store);
+
+        return store;
+    }
+
+
+    /**
+     * The user repository backed by the {@code DataSource} configured by
+     * {@code spring.datasource.*}. The repository is installed into
+     * {@link UserDao} when it is created.
+     *
+     * <p>
+     * The {@code DataSource} is created only when the {@code jdbc} profile
+     * is active (see {@code application-jdbc.properties}).
+     * </p>
+     */
+    @Bean
+    @ConditionalOnProperty(name = "user.store.type", havingValue = "jdbc")
+    public JdbcUserRepository jdbcUserRepository(
+            JdbcTemplate jdbcTemplate,
+            @Value("${user.store.cache.max-size:10000}") long cacheMaxSize,
+            @Value("${user.store.cache.ttl:60s}") Duration cacheTtl)
+    {
+        JdbcUserRepository repository = new JdbcUserRepository(jdbcTemplate, cacheMaxSize, cacheTtl);
+
+        UserDao.setRepository(repository);
+
+        return repository;
+    }
+}
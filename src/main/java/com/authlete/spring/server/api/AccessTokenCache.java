@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.WebApplicationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.authlete.jakarta.AccessTokenInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+
+/**
+ * A bounded in-process cache of results of access token introspection.
+ *
+ * <p>
+ * Entries are keyed by access token. The number of entries is bounded by
+ * {@code token.cache.max-size} and the least valuable entries are evicted
+ * when the bound is exceeded. An entry lives at most for
+ * {@code token.cache.max-ttl}, but never longer than the access token
+ * itself, so an expired access token is never reported as valid.
+ * </p>
+ *
+ * <p>
+ * When {@code token.refresh-ahead.enabled} is {@code true}, an entry that
+ * has been hit at least {@code token.refresh-ahead.min-hits} times and
+ * whose deadline is within {@code token.refresh-ahead.threshold} is
+ * refreshed in the background, so that requests for a popular access
+ * token don't stall when its entry expires. Entries whose deadline is
+ * the expiration time of the access token are not refreshed. At most
+ * {@code token.refresh-ahead.max-concurrency} refreshes run at a time.
+ * </p>
+ *
+ * <p>
+ * Note that a revoked access token may be accepted until its entry in
+ * this cache expires. Choose {@code token.cache.max-ttl} accordingly.
+ * </p>
+ */
+@Component
+public class AccessTokenCache
+{
+    private static final Logger sLogger = LoggerFactory.getLogger(AccessTokenCache.class);
+
+
+    private final boolean mEnabled;
+    private final long mMaxTtlNanos;
+    private final Cache<String, Entry> mCache;
+    private final boolean mRefreshAhead;
+    private final long mRefreshThresholdNanos;
+    private final int mRefreshMinHits;
+    private final Semaphore mRefreshPermits;
+    private final ExecutorService mRefreshExecutor;
+
+
+    public AccessTokenCache(
+            @Value("${token.cache.enabled:true}") boolean enabled,
+            @Value("${token.cache.max-size:10000}") long maxSize,
+            @Value("${token.cache.max-ttl:60s}") Duration maxTtl,
+            @Value("${token.refresh-ahead.enabled:false}") boolean refreshAhead,
+            @Value("${token.refresh-ahead.threshold:10s}") Duration refreshThreshold,
+            @Value("${token.refresh-ahead.min-hits:2}") int refreshMinHits,
+            @Value("${token.refresh-ahead.max-concurrency:2}") int refreshMaxConcurrency,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads)
+    {
+        mEnabled               = enabled;
+        mMaxTtlNanos           = maxTtl.toNanos();
+        mCache                 = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new DeadlineExpiry<String, Entry>(entry -> entry.mDeadline))
+                .build();
+        mRefreshAhead          = enabled && refreshAhead;
+        mRefreshThresholdNanos = refreshThreshold.toNanos();
+        mRefreshMinHits        = refreshMinHits;
+        mRefreshPermits        = new Semaphore(refreshMaxConcurrency);
+        mRefreshExecutor       = mRefreshAhead
+                ? createRefreshExecutor(refreshMaxConcurrency, virtualThreads) : null;
+    }
+
+
+    private static ExecutorService createRefreshExecutor(int threads, boolean virtualThreads)
+    {
+        // The number of concurrent refreshes is bounded by the semaphore,
+        // so a virtual thread can be used per refresh.
+        if (virtualThreads)
+        {
+            return Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("token-refresh-ahead-", 0).factory());
+        }
+
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "token-refresh-ahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if (mRefreshExecutor != null)
+        {
+            mRefreshExecutor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Check whether this cache is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return mEnabled;
+    }
+
+
+    /**
+     * Get the cached information about the access token.
+     *
+     * @param accessToken
+     *         An access token.
+     *
+     * @param refresher
+     *         A function that validates the access token again and puts
+     *         the result into this cache. It is called in the background
+     *         when the entry should be refreshed ahead of its deadline.
+     *         It may throw a {@link WebApplicationException} when the
+     *         access token is no longer valid. An error response of
+     *         5xx, which means a failure on the Authlete side, keeps
+     *         the entry until its deadline.
+     *
+     * @return
+     *         The cached information, or {@code null} if not cached.
+     */
+    public AccessTokenInfo get(
+            String accessToken, Function<String, AccessTokenInfo> refresher)
+    {
+        if (!mEnabled || accessToken == null)
+        {
+            return null;
+        }
+
+        Entry entry = mCache.getIfPresent(accessToken);
+
+        if (entry == null)
+        {
+            return null;
+        }
+
+        if (mRefreshAhead)
+        {
+            refreshAheadIfNecessary(accessToken, entry, refresher);
+        }
+
+        return entry.mInfo;
+    }
+
+
+    /**
+     * Get the cached information about the access token without
+     * triggering refresh-ahead.
+     *
+     * @return
+     *         The cached information, or {@code null} if not cached.
+     */
+    public AccessTokenInfo peek(String accessToken)
+    {
+        if (!mEnabled || accessToken == null)
+        {
+            return null;
+        }
+
+        Entry entry = mCache.getIfPresent(accessToken);
+
+        return (entry == null) ? null : entry.mInfo;
+    }
+
+
+    /**
+     * Cache information about a valid access token.
+     */
+    public void put(String accessToken, AccessTokenInfo info)
+    {
+        if (!mEnabled || accessToken == null || info == null)
+        {
+            return;
+        }
+
+        Entry entry = new Entry(info);
+
+        // Don't bother caching an access token that is about to expire.
+        if (entry.mDeadline - System.nanoTime() <= 0)
+        {
+            return;
+        }
+
+        mCache.put(accessToken, entry);
+    }
+
+
+    /**
+     * Remove the cached information about the access token.
+     */
+    public void invalidate(String accessToken)
+    {
+        if (accessToken == null)
+        {
+            return;
+        }
+
+        mCache.invalidate(accessToken);
+    }
+
+
+    private void refreshAheadIfNecessary(
+            String accessToken, Entry entry, Function<String, AccessTokenInfo> refresher)
+    {
+        int hits = entry.mHits.incrementAndGet();
+
+        // If the entry is not hot or its deadline is not close.
+        if (entry.mBoundedByExpiry || hits < mRefreshMinHits ||
+                entry.mDeadline - System.nanoTime() > mRefreshThresholdNanos)
+        {
+            return;
+        }
+
+        // If the entry is being refreshed by another thread.
+        if (!entry.mRefreshing.compareAndSet(false, true))
+        {
+            return;
+        }
+
+        // If too many refreshes are running, skip this time. A later hit
+        // will try again.
+        if (!mRefreshPermits.tryAcquire())
+        {
+            entry.mRefreshing.set(false);
+            return;
+        }
+
+        try
+        {
+            mRefreshExecutor.execute(() -> refresh(accessToken, entry, refresher));
+        }
+        catch (RejectedExecutionException e)
+        {
+            // Shutting down.
+            mRefreshPermits.release();
+        }
+    }
+
+
+    private void refresh(
+            String accessToken, Entry entry, Function<String, AccessTokenInfo> refresher)
+    {
+        try
+        {
+            // The refresher replaces the entry.
+            refresher.apply(accessToken);
+        }
+        catch (OverloadedException e)
+        {
+            // Too many calls of the Authlete APIs are in flight. Keep the
+            // entry until its deadline and allow a later retry.
+            entry.mRefreshing.set(false);
+        }
+        catch (WebApplicationException e)
+        {
+            // AccessTokenValidator reports a failure of the Authlete
+            // server or of the network as "500 Internal Server Error",
+            // while a rejected access token is reported as 4xx.
+            if (e.getResponse().getStatus() >= 500)
+            {
+                // Keep the entry until its deadline and allow a later retry.
+                sLogger.debug("Failed to refresh an access token ahead: {}", e.getMessage());
+                entry.mRefreshing.set(false);
+            }
+            else
+            {
+                // The access token is no longer valid.
+                mCache.asMap().remove(accessToken, entry);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // Keep the entry until its deadline and allow a later retry.
+            sLogger.debug("Failed to refresh an access token ahead: {}", e.getMessage());
+            entry.mRefreshing.set(false);
+        }
+        finally
+        {
+            mRefreshPermits.release();
+        }
+    }
+
+
+    /**
+     * An entry of this cache.
+     */
+    private final class Entry
+    {
+        private final AccessTokenInfo mInfo;
+        private final long mDeadline;
+        private final boolean mBoundedByExpiry;
+        private final AtomicInteger mHits = new AtomicInteger();
+        private final AtomicBoolean mRefreshing = new AtomicBoolean();
+
+
+        /**
+         * Fix the deadline of the entry. The deadline is bounded by both
+         * the configured maximum TTL and the remaining lifetime of the
+         * access token.
+         */
+        Entry(AccessTokenInfo info)
+        {
+            long now       = System.nanoTime();
+            long remaining = DeadlineExpiry.remainingLifetime(info);
+
+            mInfo            = info;
+            mBoundedByExpiry = remaining <= mMaxTtlNanos;
+            mDeadline        = now + Math.min(mMaxTtlNanos, remaining);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import jakarta.ws.rs.core.Response.Status;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Local checks of the syntax of access tokens.
+ *
+ * <p>
+ * Access tokens that are missing, too long, or not in the form of
+ * {@code b64token} defined in <a href="https://tools.ietf.org/html/rfc6750#section-2.1"
+ * >RFC 6750, 2.1. Authorization Request Header Field</a> are rejected
+ * without asking the Authlete server. The error responses are built once.
+ * </p>
+ */
+@Component
+public class AccessTokenPrevalidator
+{
+    private static final RejectedAccessTokenException MISSING =
+            new RejectedAccessTokenException(BearerErrors.response(
+                    Status.BAD_REQUEST, "invalid_request",
+                    "An access token must be sent as a request parameter or in Authorization header.",
+                    null));
+
+
+    private static final RejectedAccessTokenException TOO_LONG =
+            new RejectedAccessTokenException(BearerErrors.response(
+                    Status.UNAUTHORIZED, "invalid_token",
+                    "The access token is too long.", null));
+
+
+    private static final RejectedAccessTokenException MALFORMED =
+            new RejectedAccessTokenException(BearerErrors.response(
+                    Status.UNAUTHORIZED, "invalid_token",
+                    "The access token is malformed.", null));
+
+
+    private final int mMaxLength;
+
+
+    public AccessTokenPrevalidator(
+            @Value("${token.max-length:8192}") int maxLength)
+    {
+        mMaxLength = maxLength;
+    }
+
+
+    /**
+     * Check the syntax of the access token.
+     *
+     * @param accessToken
+     *         An access token extracted from a request. May be {@code null}.
+     *
+     * @return
+     *         {@code null} if the access token is syntactically valid.
+     *         Otherwise, an exception that carries a pre-built error
+     *         response.
+     */
+    RejectedAccessTokenException check(String accessToken)
+    {
+        if (accessToken == null || accessToken.isEmpty())
+        {
+            return MISSING;
+        }
+
+        if (accessToken.length() > mMaxLength)
+        {
+            return TOO_LONG;
+        }
+
+        if (!isB64Token(accessToken))
+        {
+            return MALFORMED;
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Check whether the value matches the following ABNF.
+     *
+     * <pre>
+     * b64token = 1*( ALPHA / DIGIT / "-" / "." / "_" / "~" / "+" / "/" ) *"="
+     * </pre>
+     */
+    private static boolean isB64Token(String value)
+    {
+        int length = value.length();
+        int i = 0;
+
+        for (; i < length; ++i)
+        {
+            if (!isB64TokenChar(value.charAt(i)))
+            {
+                break;
+            }
+        }
+
+        // At least one character other than '=' is required.
+        if (i == 0)
+        {
+            return false;
+        }
+
+        // Only '=' may follow.
+        for (; i < length; ++i)
+        {
+            if (value.charAt(i) != '=')
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    private static boolean isB64TokenChar(char c)
+    {
+        return ('A' <= c && c <= 'Z') || ('a' <= c && c <= 'z') || ('0' <= c && c <= '9') ||
+                c == '-' || c == '.' || c == '_' || c == '~' || c == '+' || c == '/';
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import jakarta.ws.rs.WebApplicationException;
+import com.authlete.jakarta.AccessTokenInfo;
+
+
+/**
+ * Local checks of the requirements on an access token that is already
+ * known to be valid.
+ *
+ * <p>
+ * When the information about an access token comes from a cache, the
+ * Authlete server cannot check the required scopes and subject for us.
+ * This class performs the same checks and reports violations in the
+ * way described in <a href="https://tools.ietf.org/html/rfc6750#section-3.1"
+ * >RFC 6750, 3.1. Error Codes</a>.
+ * </p>
+ */
+final class AccessTokenRequirements
+{
+    private AccessTokenRequirements()
+    {
+    }
+
+
+    /**
+     * Check that the access token has all the required scopes and is
+     * associated with the required subject.
+     *
+     * @param info
+     *         Information about a valid access token.
+     *
+     * @param requiredScopes
+     *         Scopes that the access token must have. May be {@code null}.
+     *
+     * @param requiredSubject
+     *         Subject that the access token must be associated with.
+     *         May be {@code null}.
+     *
+     * @throws WebApplicationException
+     *         The access token does not satisfy the requirements.
+     */
+    static void check(
+            AccessTokenInfo info, String[] requiredScopes, String requiredSubject)
+    {
+        if (requiredScopes != null)
+        {
+            for (String scope : requiredScopes)
+            {
+                if (scope != null && !contains(info.getScopes(), scope))
+                {
+                    throw BearerErrors.insufficientScope(String.format(
+                            "The access token does not cover the required scope '%s'.", scope),
+                            requiredScopes);
+                }
+            }
+        }
+
+        if (requiredSubject != null && !requiredSubject.equals(info.getSubject()))
+        {
+            throw BearerErrors.insufficientScope(
+                    "The access token is not associated with the required subject.",
+                    requiredScopes);
+        }
+    }
+
+
+    private static boolean contains(String[] scopes, String scope)
+    {
+        if (scopes == null)
+        {
+            return false;
+        }
+
+        for (String s : scopes)
+        {
+            if (scope.equals(s))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * A JDK Flight Recorder event of validation of an access token by
+ * {@code SpringResourceEndpoint.validateAccessToken}. A cache hit means
+ * that the access token was accepted or rejected by {@link
+ * AccessTokenCache} or {@link RejectedAccessTokenCache}.
+ */
+@Name("com.authlete.spring.server.AccessTokenValidation")
+@Label("Access Token Validation")
+@Category({ "Authlete", "Resource Server" })
+@Description("Validation of an access token by a protected resource endpoint")
+@StackTrace(false)
+final class AccessTokenValidationEvent extends RequestEvent
+{
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * A JDK Flight Recorder event of a call of an Authlete API.
+ *
+ * <p>
+ * The duration of the event is the round trip to the Authlete server, so
+ * the event covers the socket reads of the call in a recording. The time
+ * is also added to the remote latency of the enclosing {@link
+ * AccessTokenValidationEvent} or {@link UserInfoEvent} of the thread.
+ * </p>
+ */
+@Name("com.authlete.spring.server.AuthleteApiCall")
+@Label("Authlete API Call")
+@Category({ "Authlete", "Resource Server" })
+@Description("A call of an Authlete API")
+@StackTrace(false)
+final class AuthleteApiCallEvent extends jdk.jfr.Event
+{
+    @Label("API")
+    @Description("The method of AuthleteApi, e.g. introspection")
+    String api;
+
+
+    @Label("Action")
+    @Description("The action in the response, or \"error\" if the call failed")
+    String action;
+}
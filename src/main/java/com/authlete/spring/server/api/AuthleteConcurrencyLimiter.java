@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jakarta.ws.rs.WebApplicationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * An adaptive limit of concurrent calls of the Authlete APIs made by the
+ * endpoints.
+ *
+ * <p>
+ * The limit is adjusted by AIMD (additive increase, multiplicative
+ * decrease). A call that completes in time while at least half of the
+ * limit is in use increases the limit by one. A call that fails on the
+ * Authlete side or takes longer than {@code authlete.limiter.latency-threshold}
+ * multiplies the limit by {@code authlete.limiter.backoff-ratio}. The
+ * limit stays between {@code authlete.limiter.min-limit} and {@code
+ * authlete.limiter.max-limit}.
+ * </p>
+ *
+ * <p>
+ * When the limit is reached, {@link #acquire()} throws an {@link
+ * OverloadedException} that carries a pre-built "503 Service
+ * Unavailable" response with {@code Retry-After}, so that requests are
+ * shed at once instead of holding request threads while the Authlete
+ * server is slow. Requests that can be answered from local data, e.g.
+ * from caches, never reach the limiter.
+ * </p>
+ *
+ * <p>
+ * Use the limiter as follows.
+ * </p>
+ *
+ * <pre>
+ * long start = limiter.acquire();
+ * boolean dropped = true;
+ *
+ * try
+ * {
+ *     ... call the Authlete APIs ...
+ *     dropped = false;
+ * }
+ * finally
+ * {
+ *     limiter.release(start, dropped);
+ * }
+ * </pre>
+ *
+ * <p>
+ * The limit, the number of calls in flight and the number of rejected
+ * requests are published by {@link ResourceServerMetrics}.
+ * </p>
+ */
+@Component
+public class AuthleteConcurrencyLimiter
+{
+    private final boolean mEnabled;
+    private final int mMinLimit;
+    private final int mMaxLimit;
+    private final double mBackoffRatio;
+    private final long mLatencyThresholdNanos;
+    private final OverloadedException mOverloaded;
+    private final AtomicInteger mInFlight = new AtomicInteger();
+    private final LongAdder mRejections = new LongAdder();
+
+
+    /**
+     * The current limit, held as the bits of a {@code double} so that it
+     * can be updated by compare-and-set. No lock is taken, so a virtual
+     * thread releasing a call is never pinned to its carrier.
+     */
+    private final AtomicLong mLimit;
+
+
+    public AuthleteConcurrencyLimiter(
+            @Value("${authlete.limiter.enabled:false}") boolean enabled,
+            @Value("${authlete.limiter.initial-limit:20}") int initialLimit,
+            @Value("${authlete.limiter.min-limit:5}") int minLimit,
+            @Value("${authlete.limiter.max-limit:200}") int maxLimit,
+            @Value("${authlete.limiter.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${authlete.limiter.latency-threshold:1s}") Duration latencyThreshold,
+            @Value("${authlete.limiter.retry-after:1s}") Duration retryAfter,
+            ResourceServerMetrics metrics)
+    {
+        if (minLimit < 1 || maxLimit < minLimit)
+        {
+            throw new IllegalArgumentException(
+                    "authlete.limiter.min-limit must be positive and not greater than authlete.limiter.max-limit.");
+        }
+
+        if (backoffRatio <= 0 || 1 <= backoffRatio)
+        {
+            throw new IllegalArgumentException(
+                    "authlete.limiter.backoff-ratio must be greater than 0 and less than 1.");
+        }
+
+        mEnabled               = enabled;
+        mMinLimit              = minLimit;
+        mMaxLimit              = maxLimit;
+        mBackoffRatio          = backoffRatio;
+        mLatencyThresholdNanos = latencyThreshold.toNanos();
+        mOverloaded            = new OverloadedException(retryAfter);
+        mLimit                 = new AtomicLong(Double.doubleToRawLongBits(
+                                         Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+
+        if (enabled)
+        {
+            metrics.bindConcurrencyLimiter(this);
+        }
+    }
+
+
+    /**
+     * Check if the limiter is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return mEnabled;
+    }
+
+
+    /**
+     * Get the current limit.
+     */
+    public int getLimit()
+    {
+        return (int)Double.longBitsToDouble(mLimit.get());
+    }
+
+
+    /**
+     * Get the number of calls in flight.
+     */
+    public int getInFlight()
+    {
+        return mInFlight.get();
+    }
+
+
+    /**
+     * Get the number of requests rejected so far.
+     */
+    public long getRejections()
+    {
+        return mRejections.sum();
+    }
+
+
+    /**
+     * Start a call of the Authlete APIs.
+     *
+     * @return
+     *         The value of {@link System#nanoTime()} when the call
+     *         started, which must be passed to {@link #release(long,
+     *         boolean)}.
+     *
+     * @throws OverloadedException
+     *         The limit has been reached. The exception is shared and
+     *         carries a pre-built response.
+     */
+    long acquire()
+    {
+        if (!mEnabled)
+        {
+            return 0;
+        }
+
+        while (true)
+        {
+            int inFlight = mInFlight.get();
+
+            if (inFlight >= getLimit())
+            {
+                mRejections.increment();
+
+                throw mOverloaded;
+            }
+
+            if (mInFlight.compareAndSet(inFlight, inFlight + 1))
+            {
+                return System.nanoTime();
+            }
+        }
+    }
+
+
+    /**
+     * End a call of the Authlete APIs started by {@link #acquire()} and
+     * adjust the limit.
+     *
+     * @param startNanos
+     *         The value returned from {@link #acquire()}.
+     *
+     * @param dropped
+     *         {@code true} if the call failed on the Authlete side, e.g.
+     *         a network error or "500 Internal Server Error".
+     */
+    void release(long startNanos, boolean dropped)
+    {
+        if (!mEnabled)
+        {
+            return;
+        }
+
+        // The number of calls in flight including this call.
+        int inFlight = mInFlight.getAndDecrement();
+
+        boolean slow = (System.nanoTime() - startNanos) > mLatencyThresholdNanos;
+
+        while (true)
+        {
+            long   bits  = mLimit.get();
+            double limit = Double.longBitsToDouble(bits);
+            double next;
+
+            if (dropped || slow)
+            {
+                next = Math.max(mMinLimit, limit * mBackoffRatio);
+            }
+            else if (inFlight * 2 >= limit)
+            {
+                // Grow only while the limit is actually in use.
+                next = Math.min(mMaxLimit, limit + 1);
+            }
+            else
+            {
+                return;
+            }
+
+            if (next == limit || mLimit.compareAndSet(bits, Double.doubleToRawLongBits(next)))
+            {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Check if a call that ended with the error failed on the Authlete
+     * side. Errors that represent rejection of access tokens are normal
+     * outcomes.
+     */
+    static boolean isDropped(Throwable error)
+    {
+        if (error instanceof WebApplicationException)
+        {
+            return isDropped(((WebApplicationException)error).getResponse().getStatus());
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Check if a response with the status code means that the call failed
+     * on the Authlete side.
+     */
+    static boolean isDropped(int status)
+    {
+        return status >= 500;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.springframework.http.HttpHeaders;
+
+
+/**
+ * Error responses of protected resource endpoints that are detected
+ * locally, i.e. without asking the Authlete server.
+ *
+ * <p>
+ * The responses comply with <a href="https://tools.ietf.org/html/rfc6750#section-3"
+ * >RFC 6750, 3. The WWW-Authenticate Response Header Field</a> in the
+ * same way as the responses built by {@code AccessTokenValidator} of
+ * authlete-java-jakarta.
+ * </p>
+ */
+final class BearerErrors
+{
+    private BearerErrors()
+    {
+    }
+
+
+    /**
+     * Build an exception that represents "401 Unauthorized" with
+     * {@code error="invalid_token"}.
+     */
+    static WebApplicationException invalidToken(String description)
+    {
+        return new WebApplicationException(
+                response(Response.Status.UNAUTHORIZED, "invalid_token", description, null));
+    }
+
+
+    /**
+     * Build an exception that represents "403 Forbidden" with
+     * {@code error="insufficient_scope"}.
+     */
+    static WebApplicationException insufficientScope(
+            String description, String[] requiredScopes)
+    {
+        return new WebApplicationException(
+                response(Response.Status.FORBIDDEN, "insufficient_scope", description, requiredScopes));
+    }
+
+
+    /**
+     * Build the value of the {@code WWW-Authenticate} header.
+     */
+    static String challenge(String error, String description, String[] scopes)
+    {
+        StringBuilder challenge = new StringBuilder("Bearer error=\"")
+                .append(error).append("\",error_description=\"")
+                .append(description).append('"');
+
+        if (scopes != null && scopes.length != 0)
+        {
+            challenge.append(",scope=\"").append(String.join(" ", scopes)).append('"');
+        }
+
+        return challenge.toString();
+    }
+
+
+    /**
+     * Build a response that has a {@code WWW-Authenticate} header.
+     */
+    static Response response(
+            Response.Status status, String error, String description, String[] scopes)
+    {
+        return response(status, challenge(error, description, scopes));
+    }
+
+
+    /**
+     * Build a response that has the {@code WWW-Authenticate} header with
+     * the given challenge, e.g. {@code responseContent} of a response from
+     * the Authlete server.
+     */
+    static Response response(Response.Status status, String challenge)
+    {
+        return Response
+                .status(status)
+                .header(HttpHeaders.WWW_AUTHENTICATE, challenge)
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .header(HttpHeaders.PRAGMA, "no-cache")
+                .build();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import jakarta.ws.rs.WebApplicationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+
+/**
+ * An endpoint that returns information about multiple countries at once.
+ *
+ * <p>
+ * The API path is {@code "/api/countries"}. Country codes are given by
+ * the {@code codes} request parameter as a comma-separated list, e.g.
+ * {@code /api/countries?codes=US,JP,276}. The parameter may also be
+ * repeated. Each country code is interpreted in the same way as
+ * {@link CountryEndpoint} does.
+ * </p>
+ *
+ * <p>
+ * The access token is validated only once per request. The response is
+ * a JSON object keyed by the requested country codes. Unknown country
+ * codes are reported inline with {@code null} values. See {@link
+ * CountryBatchRenderer} for details. The content is streamed to the
+ * client directly from the JSON rendered in advance.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/countries")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CountriesEndpoint extends SpringResourceEndpoint
+{
+    /**
+     * Renderer of responses.
+     */
+    @Autowired
+    private CountryBatchRenderer mRenderer;
+
+
+    /**
+     * GET /api/countries
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    public ResponseEntity<?> get(
+            // HTTP header: Authorization
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+            String authorization,
+
+            // Query parameter: access_token
+            @RequestParam(value = "access_token", required = false)
+            String accessToken,
+
+            // Query parameter: codes
+            @RequestParam(value = "codes", required = false)
+            String[] codes
+    )
+    {
+        return process(extractAccessToken(authorization, accessToken),
+                CountryBatchRenderer.parseCodes(codes));
+    }
+
+
+    /**
+     * POST /api/countries
+     */
+    @RequestMapping(
+            method   = RequestMethod.POST,
+            consumes = { MediaType.APPLICATION_FORM_URLENCODED_VALUE })
+    public ResponseEntity<?> post(
+            // HTTP header: Authorization
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+            String authorization,
+
+            // Form parameter: access_token
+            @RequestParam(value = "access_token", required = false)
+            String accessToken,
+
+            // Form parameter: codes
+            @RequestParam(value = "codes", required = false)
+            String[] codes
+    )
+    {
+        return process(extractAccessToken(authorization, accessToken),
+                CountryBatchRenderer.parseCodes(codes));
+    }
+
+
+    private ResponseEntity<?> process(String accessToken, String[] codes)
+    {
+        try
+        {
+            // Validate the access token once for all the country codes.
+            validateAccessToken(accessToken);
+        }
+        catch (WebApplicationException e)
+        {
+            // Convert the exception into a ResponseEntity instance.
+            return toResponseEntity(e);
+        }
+
+        // If too many country codes are requested.
+        ResponseEntity<?> tooMany = mRenderer.check(codes);
+
+        if (tooMany != null)
+        {
+            return tooMany;
+        }
+
+        // Stream the content to the client.
+        StreamingResponseBody body = out -> mRenderer.write(codes, out);
+
+        return new ResponseEntity<StreamingResponseBody>(body, mRenderer.getHeaders(), HttpStatus.OK);
+    }
+}
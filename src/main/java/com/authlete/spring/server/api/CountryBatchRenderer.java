@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+
+/**
+ * Renderer of responses from the batch country endpoints
+ * ({@link CountriesEndpoint} and {@link ReactiveCountriesEndpoint}).
+ *
+ * <p>
+ * The content of a response is a JSON object whose keys are the requested
+ * country codes in the order of the request. The value of a key is the
+ * same JSON object as the one returned from {@link CountryEndpoint} for
+ * the country code, or {@code null} if the country code is unknown. A
+ * country code requested more than once appears only once.
+ * </p>
+ *
+ * <pre>
+ * {
+ *   "JP": { "name": "Japan", "alpha2": "JP", ... },
+ *   "276": { "name": "Germany", "alpha2": "DE", ... },
+ *   "XX": null
+ * }
+ * </pre>
+ *
+ * <p>
+ * The JSON of each country is taken from {@link CountryResponseTable}
+ * as is, so rendering a response only copies bytes rendered in advance.
+ * The number of country codes in one request is limited by
+ * {@code country.batch.max-codes}.
+ * </p>
+ */
+@Component
+public class CountryBatchRenderer
+{
+    private static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+
+    private final CountryResponseTable mTable;
+    private final int mMaxCodes;
+    private final HttpHeaders mHeaders;
+    private final ResponseEntity<byte[]> mTooManyCodes;
+
+
+    public CountryBatchRenderer(
+            CountryResponseTable table,
+            @Value("${country.batch.max-codes:300}") int maxCodes,
+            @Value("${country.cache-control:private, no-cache}") String cacheControl)
+    {
+        mTable        = table;
+        mMaxCodes     = maxCodes;
+        mHeaders      = buildHeaders(cacheControl);
+        mTooManyCodes = buildTooManyCodes(maxCodes);
+    }
+
+
+    private static HttpHeaders buildHeaders(String cacheControl)
+    {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE);
+
+        if (cacheControl != null && !cacheControl.isEmpty())
+        {
+            headers.setCacheControl(cacheControl);
+        }
+
+        return HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
+
+    private static ResponseEntity<byte[]> buildTooManyCodes(int maxCodes)
+    {
+        byte[] content = String.format(
+                "{\"error\":\"invalid_request\",\"error_description\":" +
+                "\"Too many country codes. The maximum is %d.\"}", maxCodes)
+                .getBytes(StandardCharsets.UTF_8);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE);
+        headers.setContentLength(content.length);
+
+        return new ResponseEntity<byte[]>(content, headers, HttpStatus.BAD_REQUEST);
+    }
+
+
+    /**
+     * Parse the values of the {@code codes} request parameter. Each value
+     * is a comma-separated list of country codes, and the parameter may
+     * be repeated, so {@code codes=JP,US&codes=FR} yields {@code JP},
+     * {@code US} and {@code FR}. All the batch country endpoints parse the
+     * parameter by this method, whichever way the values are bound.
+     *
+     * @param values
+     *         The values of the {@code codes} request parameter. May be
+     *         {@code null}.
+     *
+     * @return
+     *         The requested country codes, or {@code null} if {@code
+     *         values} is {@code null}.
+     */
+    public static String[] parseCodes(String[] values)
+    {
+        if (values == null)
+        {
+            return null;
+        }
+
+        List<String> codes = new ArrayList<String>(values.length);
+
+        for (String value : values)
+        {
+            for (String code : StringUtils.commaDelimitedListToStringArray(value))
+            {
+                codes.add(code);
+            }
+        }
+
+        return codes.toArray(new String[codes.size()]);
+    }
+
+
+    /**
+     * Check the number of the requested country codes.
+     *
+     * @return
+     *         "400 Bad Request" if too many country codes are requested.
+     *         Otherwise, {@code null}.
+     */
+    public ResponseEntity<byte[]> check(String[] codes)
+    {
+        if (codes != null && mMaxCodes < codes.length)
+        {
+            return mTooManyCodes;
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Get the HTTP headers of a successful response. The returned
+     * instance is read-only.
+     */
+    public HttpHeaders getHeaders()
+    {
+        return mHeaders;
+    }
+
+
+    /**
+     * Write the content of a successful response.
+     *
+     * @param codes
+     *         The requested country codes. May be {@code null}.
+     *
+     * @param out
+     *         The output stream to write the content to.
+     */
+    public void write(String[] codes, OutputStream out) throws IOException
+    {
+        out.write('{');
+
+        if (codes != null)
+        {
+            Set<String> written = new HashSet<String>();
+
+            for (String code : codes)
+            {
+                code = (code == null) ? "" : code.trim();
+
+                // Skip empty and duplicate country codes.
+                if (code.isEmpty() || !written.add(code))
+                {
+                    continue;
+                }
+
+                if (written.size() != 1)
+                {
+                    out.write(',');
+                }
+
+                writeMember(code, out);
+            }
+        }
+
+        out.write('}');
+    }
+
+
+    /**
+     * Render the content of a successful response into a byte array.
+     */
+    public byte[] render(String[] codes)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+        try
+        {
+            write(codes, out);
+        }
+        catch (IOException e)
+        {
+            // ByteArrayOutputStream does not throw IOException.
+            throw new IllegalStateException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+
+    private void writeMember(String code, OutputStream out) throws IOException
+    {
+        // The key. The country code is given by the client, so it has to
+        // be escaped.
+        out.write('"');
+        out.write(JsonStringEncoder.getInstance().quoteAsUTF8(code));
+        out.write('"');
+        out.write(':');
+
+        // The value.
+        byte[] content = mTable.getContent(CountryEndpoint.lookup(code));
+
+        out.write(content != null ? content : NULL);
+    }
+}
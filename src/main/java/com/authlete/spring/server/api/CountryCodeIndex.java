@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import com.neovisionaries.i18n.CountryCode;
+
+
+/**
+ * Index of {@link CountryCode} by ISO 3166-1 codes.
+ *
+ * <p>
+ * Alpha-2 and alpha-3 codes are mapped to array indexes by treating
+ * them as base-26 numbers (case-insensitive), so they are looked up in
+ * arrays of 26<sup>2</sup> and 26<sup>3</sup> entries. Numeric codes
+ * (000 - 999) are looked up in an array of 1,000 entries. Looking up
+ * an arbitrary string never allocates memory nor throws an exception.
+ * </p>
+ */
+final class CountryCodeIndex
+{
+    private static final int NUM_LETTERS = 26;
+    private static final int NUM_NUMERIC = 1000;
+
+
+    private static final CountryCode[] sAlpha2 = new CountryCode[NUM_LETTERS * NUM_LETTERS];
+    private static final CountryCode[] sAlpha3 = new CountryCode[NUM_LETTERS * NUM_LETTERS * NUM_LETTERS];
+    private static final CountryCode[] sNumeric = new CountryCode[NUM_NUMERIC];
+
+
+    static
+    {
+        for (CountryCode cc : CountryCode.values())
+        {
+            register(cc.getAlpha2());
+            register(cc.getAlpha3());
+        }
+
+        for (int code = 0; code < NUM_NUMERIC; ++code)
+        {
+            // Let nv-i18n decide which entry a numeric code shared by
+            // several entries resolves to.
+            sNumeric[code] = CountryCode.getByCode(code);
+        }
+    }
+
+
+    private CountryCodeIndex()
+    {
+    }
+
+
+    private static void register(String code)
+    {
+        if (code == null)
+        {
+            return;
+        }
+
+        int index = alphaIndex(code);
+
+        if (index < 0)
+        {
+            return;
+        }
+
+        // Let nv-i18n decide which entry an alpha code resolves to.
+        CountryCode cc = CountryCode.getByCodeIgnoreCase(code);
+
+        if (code.length() == 2)
+        {
+            sAlpha2[index] = cc;
+        }
+        else
+        {
+            sAlpha3[index] = cc;
+        }
+    }
+
+
+    /**
+     * Look up a {@link CountryCode} instance from an ISO 3166-1 code.
+     *
+     * @param code
+     *         ISO 3166-1 code (alpha-2, alpha-3, or numeric). Alpha
+     *         codes are case-insensitive. Numeric codes may have leading
+     *         zeros, e.g. {@code "036"}.
+     *
+     * @return
+     *         A {@link CountryCode} instance that corresponds to the
+     *         given code, or {@code null} if not found.
+     */
+    static CountryCode lookup(String code)
+    {
+        if (code == null || code.isEmpty())
+        {
+            return null;
+        }
+
+        if (isDigit(code.charAt(0)))
+        {
+            return lookupNumeric(code);
+        }
+
+        int index = alphaIndex(code);
+
+        if (index < 0)
+        {
+            return null;
+        }
+
+        return (code.length() == 2) ? sAlpha2[index] : sAlpha3[index];
+    }
+
+
+    private static CountryCode lookupNumeric(String code)
+    {
+        int value = 0;
+
+        for (int i = 0; i < code.length(); ++i)
+        {
+            char c = code.charAt(i);
+
+            if (!isDigit(c))
+            {
+                return null;
+            }
+
+            value = value * 10 + (c - '0');
+
+            if (NUM_NUMERIC <= value)
+            {
+                return null;
+            }
+        }
+
+        return sNumeric[value];
+    }
+
+
+    /**
+     * Compute the index of an alpha-2 or alpha-3 code.
+     *
+     * @return
+     *         The index, or -1 if the code is not two or three letters.
+     */
+    private static int alphaIndex(String code)
+    {
+        int length = code.length();
+
+        if (length != 2 && length != 3)
+        {
+            return -1;
+        }
+
+        int index = 0;
+
+        for (int i = 0; i < length; ++i)
+        {
+            int letter = letterIndex(code.charAt(i));
+
+            if (letter < 0)
+            {
+                return -1;
+            }
+
+            index = index * NUM_LETTERS + letter;
+        }
+
+        return index;
+    }
+
+
+    private static int letterIndex(char c)
+    {
+        if ('A' <= c && c <= 'Z')
+        {
+            return c - 'A';
+        }
+
+        if ('a' <= c && c <= 'z')
+        {
+            return c - 'a';
+        }
+
+        return -1;
+    }
+
+
+    private static boolean isDigit(char c)
+    {
+        return '0' <= c && c <= '9';
+    }
+}
@@ -20,6 +20,8 @@ package com.authlete.spring.server.api;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import jakarta.ws.rs.WebApplicationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -78,11 +80,26 @@ import com.neovisionaries.i18n.CountryCode;
  * >RFC 6750</a> (The OAuth 2.0 Authorization Framework:
  * Bearer Token Usage).
  * </p>
+ *
+ * <p>
+ * Responses carry a strong {@code ETag}. When the {@code If-None-Match}
+ * header of a {@code GET} request matches it, "304 Not Modified" is
+ * returned without content. The access token is validated even in that
+ * case.
+ * </p>
  */
 @RestController
 @RequestMapping("/api/country/{countryCode}")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CountryEndpoint extends SpringResourceEndpoint
 {
+    /**
+     * Responses rendered in advance.
+     */
+    @Autowired
+    private CountryResponseTable mCountryResponseTable;
+
+
     /**
      * GET /api/country/{countryCode}
      */
@@ -98,7 +115,11 @@ public class CountryEndpoint extends SpringResourceEndpoint
 
             // Path parameter: countryCode
             @PathVariable("countryCode")
-            String countryCode
+            String countryCode,
+
+            // HTTP header: If-None-Match
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+            String ifNoneMatch
     )
     {
         // Extract an access token from either the Authorization header or
@@ -109,7 +130,7 @@ public class CountryEndpoint extends SpringResourceEndpoint
 
         // Validate the access token, collect information about the country
         // identified by the country code, and return the information.
-        return process(token, countryCode);
+        return process(token, countryCode, ifNoneMatch);
     }
 
 
@@ -140,11 +161,12 @@ public class CountryEndpoint extends SpringResourceEndpoint
 
         // Validate the access token, collect information about the country
         // identified by the country code, and return the information.
-        return process(token, countryCode);
+        // Conditional requests are not applicable to POST.
+        return process(token, countryCode, null);
     }
 
 
-    private ResponseEntity<?> process(String accessToken, String countryCode)
+    private ResponseEntity<?> process(String accessToken, String countryCode, String ifNoneMatch)
     {
         // Validate the access token. Because this endpoint does not require
         // any scopes, here we use the simplest variant of validateAccessToken()
@@ -177,23 +199,22 @@ public class CountryEndpoint extends SpringResourceEndpoint
         // If validateAccessToken() did not throw an exception, the access
         // token presented by the client application is valid.
 
-        // Build the content.
-        Object content = buildContent(countryCode);
-
-        // Build the response.
-        return new ResponseEntityBuilder()
-                .ok()
-                .contentType("application/json;charset=UTF-8")
-                .body(content)
-                .build();
+        // Return the response rendered in advance for the country, or
+        // "304 Not Modified" if the client already has the same content.
+        return mCountryResponseTable.get(lookup(countryCode), ifNoneMatch);
     }
 
 
-    private Map<String, Object> buildContent(String countryCode)
+    /**
+     * Build the content of a successful response for the country.
+     * This is called by {@link CountryResponseTable} only once per
+     * country at startup.
+     *
+     * @param cc
+     *         A country. May be {@code null}.
+     */
+    static Map<String, Object> buildContent(CountryCode cc)
     {
-        // Look up a CountryCode instance that has the ISO 3166-1 code.
-        CountryCode cc = lookup(countryCode);
-
         Map<String, Object> data = new LinkedHashMap<String, Object>();
 
         if (cc != null)
@@ -213,6 +234,11 @@ public class CountryEndpoint extends SpringResourceEndpoint
     /**
      * Look up a {@link CountryCode} instance from an ISO 3166-1 code.
      *
+     * <p>
+     * This method does not throw any exception for any input, so junk
+     * path segments are as cheap as valid codes. See {@link CountryCodeIndex}.
+     * </p>
+     *
      * @param countryCode
      *         ISO 3166-1 code (alpha-2, alpha-3, or numeric).
      *
@@ -221,32 +247,8 @@ public class CountryEndpoint extends SpringResourceEndpoint
      *         given code. If the given code is not valid, {@code null}
      *         is returned.
      */
-    private CountryCode lookup(String countryCode)
+    static CountryCode lookup(String countryCode)
     {
-        if (countryCode == null)
-        {
-            // Not found.
-            return null;
-        }
-
-        // Interpret the code as an ISO 3166-1 alpha-2 or alpha-3 code.
-        CountryCode cc = CountryCode.getByCodeIgnoreCase(countryCode);
-
-        if (cc != null)
-        {
-            // Found.
-            return cc;
-        }
-
-        try
-        {
-            // Interpret the code as an ISO 3166-1 numeric code.
-            return CountryCode.getByCode(Integer.parseInt(countryCode));
-        }
-        catch (NumberFormatException e)
-        {
-            // Not found.
-            return null;
-        }
+        return CountryCodeIndex.lookup(countryCode);
     }
 }
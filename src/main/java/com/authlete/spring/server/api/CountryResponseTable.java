@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovisionaries.i18n.CountryCode;
+
+
+/**
+ * Successful responses of {@link CountryEndpoint}, rendered in advance.
+ *
+ * <p>
+ * The content of the response for a country never changes while the
+ * process runs, and there are only a few hundred countries. So, the
+ * content for every {@link CountryCode} is serialized into UTF-8 JSON
+ * only once, and a {@link ResponseEntity} with a fixed {@code Content-Length}
+ * is built for it. Serving a request after the access token has been
+ * validated just returns one of the response entities.
+ * </p>
+ *
+ * <p>
+ * A strong {@code ETag} is computed from the content of each response at
+ * startup, and a "304 Not Modified" response is built for it as well.
+ * Both carry the {@code Cache-Control} header configured by
+ * {@code country.cache-control}. Because the responses are protected by
+ * access tokens, the default value, {@code "private, no-cache"}, lets
+ * clients keep the content but makes them revalidate it (and their
+ * access tokens) every time.
+ * </p>
+ */
+@Component
+public class CountryResponseTable
+{
+    private static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+
+
+    /**
+     * Responses for countries.
+     */
+    private final Map<CountryCode, Entry> mEntries;
+
+
+    /**
+     * Response for an unknown country code. The content is an empty JSON object.
+     */
+    private final Entry mUnknownEntry;
+
+
+    public CountryResponseTable(
+            @Value("${country.cache-control:private, no-cache}") String cacheControl)
+    {
+        mEntries      = buildEntries(cacheControl);
+        mUnknownEntry = new Entry(null, cacheControl);
+    }
+
+
+    /**
+     * Get the response for the country, taking the {@code If-None-Match}
+     * request header into account.
+     *
+     * @param cc
+     *         A country. {@code null} means an unknown country code.
+     *
+     * @param ifNoneMatch
+     *         The value of the {@code If-None-Match} request header.
+     *         May be {@code null}.
+     *
+     * @return
+     *         "304 Not Modified" without content if {@code ifNoneMatch}
+     *         matches the {@code ETag} of the response. Otherwise, the
+     *         response itself.
+     */
+    public ResponseEntity<byte[]> get(CountryCode cc, String ifNoneMatch)
+    {
+        Entry entry = getEntry(cc);
+
+        if (ifNoneMatch != null && matches(ifNoneMatch, entry.mETag))
+        {
+            return entry.mNotModified;
+        }
+
+        return entry.mResponse;
+    }
+
+
+    /**
+     * Get the content of the response for the country, i.e. the country
+     * information in UTF-8 JSON.
+     *
+     * @param cc
+     *         A country.
+     *
+     * @return
+     *         The content. {@code null} if {@code cc} is {@code null}.
+     */
+    public byte[] getContent(CountryCode cc)
+    {
+        if (cc == null)
+        {
+            return null;
+        }
+
+        return mEntries.get(cc).mResponse.getBody();
+    }
+
+
+    private Entry getEntry(CountryCode cc)
+    {
+        if (cc == null)
+        {
+            return mUnknownEntry;
+        }
+
+        return mEntries.get(cc);
+    }
+
+
+    private static Map<CountryCode, Entry> buildEntries(String cacheControl)
+    {
+        Map<CountryCode, Entry> entries = new EnumMap<CountryCode, Entry>(CountryCode.class);
+
+        for (CountryCode cc : CountryCode.values())
+        {
+            entries.put(cc, new Entry(cc, cacheControl));
+        }
+
+        return entries;
+    }
+
+
+    /**
+     * Check whether the value of an {@code If-None-Match} header matches
+     * the entity tag. As required by RFC 9110, Section 13.1.2, the weak
+     * comparison is used, so {@code W/} prefixes are ignored.
+     */
+    private static boolean matches(String ifNoneMatch, String etag)
+    {
+        int length = ifNoneMatch.length();
+        int start  = 0;
+
+        while (start < length)
+        {
+            int end = ifNoneMatch.indexOf(',', start);
+
+            if (end < 0)
+            {
+                end = length;
+            }
+
+            // Trim the member of the list.
+            int from = start;
+            int to   = end;
+
+            while (from < to && ifNoneMatch.charAt(from) == ' ')
+            {
+                ++from;
+            }
+
+            while (from < to && ifNoneMatch.charAt(to - 1) == ' ')
+            {
+                --to;
+            }
+
+            // Weak comparison.
+            if (ifNoneMatch.startsWith("W/", from))
+            {
+                from += 2;
+            }
+
+            if (to - from == 1 && ifNoneMatch.charAt(from) == '*')
+            {
+                return true;
+            }
+
+            if (to - from == etag.length() && ifNoneMatch.startsWith(etag, from))
+            {
+                return true;
+            }
+
+            start = end + 1;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Responses for a country.
+     */
+    private static final class Entry
+    {
+        private final String mETag;
+        private final ResponseEntity<byte[]> mResponse;
+        private final ResponseEntity<byte[]> mNotModified;
+
+
+        Entry(CountryCode cc, String cacheControl)
+        {
+            byte[] content = serialize(CountryEndpoint.buildContent(cc));
+
+            mETag = computeETag(content);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE);
+            headers.setContentLength(content.length);
+            headers.setETag(mETag);
+
+            if (cacheControl != null && !cacheControl.isEmpty())
+            {
+                headers.setCacheControl(cacheControl);
+            }
+
+            mResponse = new ResponseEntity<byte[]>(content, headers, HttpStatus.OK);
+
+            // "304 Not Modified" carries the same validator and caching
+            // headers but no content (RFC 9110, Section 15.4.5).
+            HttpHeaders notModifiedHeaders = new HttpHeaders();
+            notModifiedHeaders.setETag(mETag);
+
+            if (cacheControl != null && !cacheControl.isEmpty())
+            {
+                notModifiedHeaders.setCacheControl(cacheControl);
+            }
+
+            mNotModified = new ResponseEntity<byte[]>(notModifiedHeaders, HttpStatus.NOT_MODIFIED);
+        }
+    }
+
+
+    private static byte[] serialize(Object content)
+    {
+        try
+        {
+            // ObjectMapper writes UTF-8 by default.
+            return new ObjectMapper().writeValueAsBytes(content);
+        }
+        catch (JsonProcessingException e)
+        {
+            // The content consists of strings and numbers only.
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * Compute a strong entity tag from the content. The first 128 bits of
+     * the SHA-256 hash of the content are enough to distinguish a few
+     * hundred responses.
+     */
+    private static String computeETag(byte[] content)
+    {
+        try
+        {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform supports SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import com.authlete.jakarta.AccessTokenInfo;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+
+/**
+ * Expiry policy of caches whose entries have a fixed deadline, which is
+ * usually bounded by the lifetime of an access token.
+ *
+ * <p>
+ * An entry expires at its deadline (a value of {@link System#nanoTime()}).
+ * Replacing an entry applies the deadline of the new entry, and reading
+ * an entry does not extend its lifetime.
+ * </p>
+ *
+ * @param <K>
+ *         The type of keys.
+ *
+ * @param <V>
+ *         The type of entries.
+ */
+final class DeadlineExpiry<K, V> implements Expiry<K, V>
+{
+    private final ToLongFunction<V> mDeadline;
+
+
+    /**
+     * Constructor.
+     *
+     * @param deadline
+     *         A function that returns the deadline of an entry.
+     */
+    DeadlineExpiry(ToLongFunction<V> deadline)
+    {
+        mDeadline = deadline;
+    }
+
+
+    /**
+     * Get the remaining lifetime of the access token in nanoseconds, or
+     * {@link Long#MAX_VALUE} if the access token does not expire.
+     */
+    static long remainingLifetime(AccessTokenInfo info)
+    {
+        long expiresAt = info.getExpiresAt();
+
+        return (expiresAt <= 0) ? Long.MAX_VALUE
+                : TimeUnit.MILLISECONDS.toNanos(expiresAt - System.currentTimeMillis());
+    }
+
+
+    @Override
+    public long expireAfterCreate(K key, V value, long currentTime)
+    {
+        return Math.max(0, mDeadline.applyAsLong(value) - currentTime);
+    }
+
+
+    @Override
+    public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration)
+    {
+        return Math.max(0, mDeadline.applyAsLong(value) - currentTime);
+    }
+
+
+    @Override
+    public long expireAfterRead(K key, V value, long currentTime, long currentDuration)
+    {
+        // Reading an entry does not extend its lifetime.
+        return currentDuration;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.net.URI;
+import java.security.Key;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.authlete.common.dto.IntrospectionResponse;
+import com.authlete.jakarta.AccessTokenInfo;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jwk.AsymmetricJWK;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.SecretJWK;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+
+/**
+ * Local validation of JWT access tokens.
+ *
+ * <p>
+ * When the Authlete service is configured to issue JWT access tokens,
+ * this validator verifies the signature, {@code exp}, {@code nbf},
+ * {@code iss} and {@code aud} of an access token locally against the
+ * JWK Set published at {@code token.jwt.jwks-uri}. The JWK Set is
+ * fetched once at startup and then refreshed in the background every
+ * {@code token.jwt.jwks-refresh-interval}.
+ * </p>
+ *
+ * <p>
+ * Access tokens that cannot be judged locally, e.g. opaque access
+ * tokens and JWTs signed by a key whose {@code kid} is not in the JWK
+ * Set, are left to the introspection API. Note that revocation of a
+ * JWT access token cannot be detected locally.
+ * </p>
+ */
+@Component
+public class JwtAccessTokenValidator
+{
+    private static final Logger sLogger = LoggerFactory.getLogger(JwtAccessTokenValidator.class);
+    private static final int JWKS_TIMEOUT = 5000;
+    private static final int JWKS_SIZE_LIMIT = 512 * 1024;
+
+
+    private final DefaultJWSVerifierFactory mVerifierFactory = new DefaultJWSVerifierFactory();
+    private final boolean mEnabled;
+    private final String mJwksUri;
+    private final String mIssuer;
+    private final String mAudience;
+    private final long mClockSkewMillis;
+    private final ScheduledExecutorService mScheduler;
+    private volatile JWKSet mJwkSet;
+
+
+    public JwtAccessTokenValidator(
+            @Value("${token.jwt.enabled:false}") boolean enabled,
+            @Value("${token.jwt.jwks-uri:}") String jwksUri,
+            @Value("${token.jwt.issuer:}") String issuer,
+            @Value("${token.jwt.audience:}") String audience,
+            @Value("${token.jwt.clock-skew:30s}") Duration clockSkew,
+            @Value("${token.jwt.jwks-refresh-interval:5m}") Duration refreshInterval)
+    {
+        mEnabled         = enabled && !jwksUri.isEmpty();
+        mJwksUri         = jwksUri;
+        mIssuer          = issuer.isEmpty()   ? null : issuer;
+        mAudience        = audience.isEmpty() ? null : audience;
+        mClockSkewMillis = clockSkew.toMillis();
+
+        if (!mEnabled)
+        {
+            mScheduler = null;
+            return;
+        }
+
+        mScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Fetch the JWK Set now and refresh it periodically.
+        mScheduler.scheduleWithFixedDelay(this::refreshJwkSet,
+                0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Create a validator that uses the given JWK Set and never refreshes
+     * it. This is for tests.
+     */
+    JwtAccessTokenValidator(JWKSet jwkSet, String issuer, String audience, Duration clockSkew)
+    {
+        mEnabled         = true;
+        mJwksUri         = null;
+        mIssuer          = issuer;
+        mAudience        = audience;
+        mClockSkewMillis = clockSkew.toMillis();
+        mScheduler       = null;
+        mJwkSet          = jwkSet;
+    }
+
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if (mScheduler != null)
+        {
+            mScheduler.shutdownNow();
+        }
+    }
+
+
+    private void refreshJwkSet()
+    {
+        try
+        {
+            mJwkSet = JWKSet.load(URI.create(mJwksUri).toURL(),
+                    JWKS_TIMEOUT, JWKS_TIMEOUT, JWKS_SIZE_LIMIT);
+        }
+        catch (Exception e)
+        {
+            // Keep using the previous JWK Set.
+            sLogger.warn("Failed to fetch the JWK Set from {}: {}", mJwksUri, e.getMessage());
+        }
+    }
+
+
+    /**
+     * Validate the access token locally.
+     *
+     * @param accessToken
+     *         An access token. Must not be {@code null}.
+     *
+     * @return
+     *         Information about the access token, or {@code null} if the
+     *         access token cannot be validated locally. In the latter case,
+     *         the caller should use the introspection API.
+     *
+     * @throws jakarta.ws.rs.WebApplicationException
+     *         The access token is a JWT that is definitely invalid.
+     */
+    public AccessTokenInfo validate(String accessToken)
+    {
+        JWKSet jwkSet = mJwkSet;
+
+        // If local validation is not available. An opaque access token
+        // does not contain a period, so don't bother parsing it.
+        if (!mEnabled || jwkSet == null || accessToken.indexOf('.') < 0)
+        {
+            return null;
+        }
+
+        SignedJWT jwt;
+        JWSVerifier verifier;
+
+        try
+        {
+            jwt = SignedJWT.parse(accessToken);
+
+            String kid = jwt.getHeader().getKeyID();
+            JWK jwk    = (kid == null) ? null : jwkSet.getKeyByKeyId(kid);
+
+            // If the key used to sign the JWT is unknown.
+            if (jwk == null)
+            {
+                return null;
+            }
+
+            verifier = mVerifierFactory.createJWSVerifier(jwt.getHeader(), toKey(jwk));
+        }
+        catch (ParseException | JOSEException e)
+        {
+            // Not a JWS, or not a combination of algorithm and key that we support.
+            return null;
+        }
+
+        JWTClaimsSet claims;
+
+        try
+        {
+            if (!jwt.verify(verifier))
+            {
+                throw BearerErrors.invalidToken("The signature of the access token is invalid.");
+            }
+
+            claims = jwt.getJWTClaimsSet();
+        }
+        catch (JOSEException | ParseException e)
+        {
+            throw BearerErrors.invalidToken("The access token is malformed.");
+        }
+
+        Date exp = claims.getExpirationTime();
+
+        // Without 'exp', the lifetime of the access token is unknown.
+        if (exp == null)
+        {
+            return null;
+        }
+
+        checkClaims(claims, exp);
+
+        return toAccessTokenInfo(accessToken, claims, exp);
+    }
+
+
+    private static Key toKey(JWK jwk) throws JOSEException
+    {
+        if (jwk instanceof AsymmetricJWK)
+        {
+            return ((AsymmetricJWK)jwk).toPublicKey();
+        }
+
+        if (jwk instanceof SecretJWK)
+        {
+            return ((SecretJWK)jwk).toSecretKey();
+        }
+
+        throw new JOSEException("Unsupported key type: " + jwk.getKeyType());
+    }
+
+
+    private void checkClaims(JWTClaimsSet claims, Date exp)
+    {
+        long now = System.currentTimeMillis();
+
+        if (exp.getTime() + mClockSkewMillis <= now)
+        {
+            throw BearerErrors.invalidToken("The access token has expired.");
+        }
+
+        Date nbf = claims.getNotBeforeTime();
+
+        if (nbf != null && now + mClockSkewMillis < nbf.getTime())
+        {
+            throw BearerErrors.invalidToken("The access token is not valid yet.");
+        }
+
+        if (mIssuer != null && !mIssuer.equals(claims.getIssuer()))
+        {
+            throw BearerErrors.invalidToken("The access token was issued by an unexpected issuer.");
+        }
+
+        List<String> audience = claims.getAudience();
+
+        if (mAudience != null && (audience == null || !audience.contains(mAudience)))
+        {
+            throw BearerErrors.invalidToken("The access token is not intended for this resource server.");
+        }
+    }
+
+
+    /**
+     * Build an {@link AccessTokenInfo} from the claims of a JWT access
+     * token in the same shape as the one built from introspection.
+     */
+    private static AccessTokenInfo toAccessTokenInfo(
+            String accessToken, JWTClaimsSet claims, Date exp)
+    {
+        IntrospectionResponse response = new IntrospectionResponse();
+        response.setSubject(claims.getSubject());
+        response.setExpiresAt(exp.getTime());
+
+        Object scope = claims.getClaim("scope");
+
+        if (scope instanceof String && !((String)scope).isEmpty())
+        {
+            response.setScopes(((String)scope).split(" "));
+        }
+
+        Object clientId = claims.getClaim("client_id");
+
+        if (clientId instanceof String)
+        {
+            try
+            {
+                response.setClientId(Long.parseLong((String)clientId));
+            }
+            catch (NumberFormatException e)
+            {
+                // The client ID alias is used.
+                response.setClientIdAlias((String)clientId);
+                response.setClientIdAliasUsed(true);
+            }
+        }
+
+        return new AccessTokenInfo(accessToken, response);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.time.Duration;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+
+/**
+ * A {@link WebApplicationException} that represents "503 Service
+ * Unavailable" with {@code Retry-After}, thrown by {@link
+ * AuthleteConcurrencyLimiter} when a request is shed.
+ *
+ * <p>
+ * Like {@link RejectedAccessTokenException}, an instance is created once
+ * and thrown repeatedly, so it doesn't record a stack trace and carries
+ * a pre-built {@link ResponseEntity}.
+ * </p>
+ */
+class OverloadedException extends WebApplicationException
+{
+    private static final long serialVersionUID = 1L;
+
+
+    private final transient ResponseEntity<?> mResponseEntity;
+
+
+    OverloadedException(Duration retryAfter)
+    {
+        super(response(retryAfter));
+
+        mResponseEntity = new ResponseEntityBuilder().response(getResponse()).buildShared();
+    }
+
+
+    private static Response response(Duration retryAfter)
+    {
+        // Retry-After takes seconds. Round up so that it is never 0.
+        long seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+
+        return Response
+                .status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds))
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .build();
+    }
+
+
+    /**
+     * Get the pre-built response entity.
+     */
+    ResponseEntity<?> getResponseEntity()
+    {
+        return mResponseEntity;
+    }
+
+
+    @Override
+    public Throwable fillInStackTrace()
+    {
+        // The stack trace would be meaningless because this instance is reused.
+        return this;
+    }
+}
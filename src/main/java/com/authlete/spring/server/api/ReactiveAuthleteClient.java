@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import com.authlete.common.conf.AuthleteConfiguration;
+import com.authlete.common.conf.AuthletePropertiesConfiguration;
+import com.authlete.common.dto.IntrospectionRequest;
+import com.authlete.common.dto.IntrospectionResponse;
+import com.authlete.common.dto.UserInfoIssueRequest;
+import com.authlete.common.dto.UserInfoIssueResponse;
+import com.authlete.common.dto.UserInfoRequest;
+import com.authlete.common.dto.UserInfoResponse;
+import com.authlete.common.util.Utils;
+import io.netty.channel.ChannelOption;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+
+/**
+ * A non-blocking client of the Authlete APIs used by the reactive
+ * endpoints.
+ *
+ * <p>
+ * Only the APIs needed by protected resource endpoints are supported:
+ * {@code /auth/introspection}, {@code /auth/userinfo} and
+ * {@code /auth/userinfo/issue}. Requests and responses are converted
+ * from/to the DTOs of authlete-java-common in the same way as the
+ * blocking implementations of {@code AuthleteApi}. The settings of the
+ * Authlete server are read from {@code authlete.properties} and the
+ * settings of the HTTP client from {@code application.properties}
+ * ({@code authlete.http.*}).
+ * </p>
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAuthleteClient
+{
+    private final WebClient mWebClient;
+    private final String mPathPrefix;
+    private final ResourceServerMetrics mResourceServerMetrics;
+
+
+    public ReactiveAuthleteClient(
+            WebClient.Builder builder,
+            ResourceServerMetrics metrics,
+            @Value("${authlete.http.max-connections:200}") int maxConnections,
+            @Value("${authlete.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${authlete.http.read-timeout:10s}") Duration readTimeout,
+            @Value("${authlete.http.keep-alive:60s}") Duration keepAlive,
+            @Value("${authlete.http.http2:true}") boolean http2)
+    {
+        AuthleteConfiguration conf = new AuthletePropertiesConfiguration();
+        boolean v3 = "V3".equalsIgnoreCase(conf.getApiVersion());
+
+        mWebClient = builder
+                .baseUrl(conf.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(createHttpClient(
+                        conf.getBaseUrl(), maxConnections, connectTimeout, readTimeout, keepAlive, http2)))
+                .defaultHeaders(headers -> authenticate(headers, conf, v3))
+                .build();
+
+        // Authlete API V3 puts the service ID in the path.
+        mPathPrefix = v3 ? "/api/" + conf.getServiceApiKey() : "/api";
+
+        mResourceServerMetrics = metrics;
+    }
+
+
+    /**
+     * Create an HTTP client with a pool of connections to the Authlete
+     * server. When the Authlete server is accessed over TLS and HTTP/2
+     * is enabled, concurrent requests are multiplexed over the pooled
+     * connections. Metrics of the pool are published under the name
+     * {@code reactor.netty.connection.provider.*}.
+     */
+    private static HttpClient createHttpClient(
+            String baseUrl, int maxConnections, Duration connectTimeout,
+            Duration readTimeout, Duration keepAlive, boolean http2)
+    {
+        ConnectionProvider provider = ConnectionProvider.builder("authlete")
+                .maxConnections(maxConnections)
+                .maxIdleTime(keepAlive)
+                .pendingAcquireTimeout(connectTimeout.plus(readTimeout))
+                .metrics(true)
+                .build();
+
+        HttpClient client = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int)connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+
+        // HTTP/2 is negotiated by ALPN, so it requires TLS.
+        if (http2 && baseUrl.startsWith("https:"))
+        {
+            client = client.secure().protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
+        return client;
+    }
+
+
+    private static void authenticate(HttpHeaders headers, AuthleteConfiguration conf, boolean v3)
+    {
+        if (v3)
+        {
+            headers.setBearerAuth(conf.getServiceAccessToken());
+        }
+        else
+        {
+            headers.setBasicAuth(conf.getServiceApiKey(), conf.getServiceApiSecret());
+        }
+    }
+
+
+    /**
+     * Call the {@code /auth/introspection} API.
+     */
+    public Mono<IntrospectionResponse> introspection(IntrospectionRequest request)
+    {
+        return post("introspection", "/auth/introspection", request, IntrospectionResponse.class);
+    }
+
+
+    /**
+     * Call the {@code /auth/userinfo} API.
+     */
+    public Mono<UserInfoResponse> userinfo(UserInfoRequest request)
+    {
+        return post("userinfo", "/auth/userinfo", request, UserInfoResponse.class);
+    }
+
+
+    /**
+     * Call the {@code /auth/userinfo/issue} API.
+     */
+    public Mono<UserInfoIssueResponse> userinfoIssue(UserInfoIssueRequest request)
+    {
+        return post("userinfoIssue", "/auth/userinfo/issue", request, UserInfoIssueResponse.class);
+    }
+
+
+    /**
+     * Call an Authlete API. The call is timed by {@link ResourceServerMetrics}
+     * with the same name as the corresponding method of {@code AuthleteApi}.
+     */
+    private <T> Mono<T> post(String api, String path, Object request, Class<T> responseClass)
+    {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+
+            return mWebClient.post()
+                    .uri(mPathPrefix + path)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .bodyValue(Utils.toJson(request))
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .map(json -> Utils.fromJson(json, responseClass))
+                    .doOnSuccess(response -> mResourceServerMetrics.recordAuthleteCall(api, start, response, null))
+                    .doOnError(e -> mResourceServerMetrics.recordAuthleteCall(api, start, null, e));
+        });
+    }
+}
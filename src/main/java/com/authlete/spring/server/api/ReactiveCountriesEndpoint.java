@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * The reactive counterpart of {@link CountriesEndpoint}.
+ *
+ * <p>
+ * The API path, the request parameters and the response are the same as
+ * those of {@link CountriesEndpoint}. The content is rendered into one
+ * buffer, which is small because it consists of the JSON rendered in
+ * advance and the number of country codes is limited.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/countries")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCountriesEndpoint extends ReactiveResourceEndpoint
+{
+    /**
+     * Renderer of responses.
+     */
+    @Autowired
+    private CountryBatchRenderer mRenderer;
+
+
+    /**
+     * GET /api/countries
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    public Mono<ResponseEntity<?>> get(
+            // HTTP header: Authorization
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+            String authorization,
+
+            // Query parameter: access_token
+            @RequestParam(value = "access_token", required = false)
+            String accessToken,
+
+            // Query parameter: codes
+            @RequestParam(value = "codes", required = false)
+            String[] codes
+    )
+    {
+        return process(extractAccessToken(authorization, accessToken),
+                CountryBatchRenderer.parseCodes(codes));
+    }
+
+
+    /**
+     * POST /api/countries
+     */
+    @RequestMapping(
+            method   = RequestMethod.POST,
+            consumes = { MediaType.APPLICATION_FORM_URLENCODED_VALUE })
+    public Mono<ResponseEntity<?>> post(
+            // HTTP header: Authorization
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+            String authorization,
+
+            ServerWebExchange exchange
+    )
+    {
+        // Unlike Spring MVC, @RequestParam does not bind form parameters
+        // in Spring WebFlux, so read the form data explicitly.
+        return exchange.getFormData().flatMap(form -> process(
+                extractAccessToken(authorization, form.getFirst("access_token")),
+                CountryBatchRenderer.parseCodes(toArray(form.get("codes")))));
+    }
+
+
+    private static String[] toArray(List<String> values)
+    {
+        return (values == null) ? null : values.toArray(new String[values.size()]);
+    }
+
+
+    private Mono<ResponseEntity<?>> process(String accessToken, String[] codes)
+    {
+        // Validate the access token once for all the country codes, and
+        // then build the response.
+        return validateAccessToken(accessToken, null, null)
+                .<ResponseEntity<?>>map(info -> {
+                    ResponseEntity<?> tooMany = mRenderer.check(codes);
+
+                    if (tooMany != null)
+                    {
+                        return tooMany;
+                    }
+
+                    return new ResponseEntity<byte[]>(
+                            mRenderer.render(codes), mRenderer.getHeaders(), HttpStatus.OK);
+                })
+                .onErrorResume(e -> Mono.just(toResponseEntity(e)));
+    }
+}
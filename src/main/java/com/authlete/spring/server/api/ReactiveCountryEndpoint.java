@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * The reactive counterpart of {@link CountryEndpoint}.
+ *
+ * <p>
+ * The API path, the request parameters and the response are the same as
+ * those of {@link CountryEndpoint}. This endpoint is used instead of
+ * {@link CountryEndpoint} when the application runs as a reactive web
+ * application ({@code spring.main.web-application-type=reactive}).
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/country/{countryCode}")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCountryEndpoint extends ReactiveResourceEndpoint
+{
+    /**
+     * Responses rendered in advance.
+     */
+    @Autowired
+    private CountryResponseTable mCountryResponseTable;
+
+
+    /**
+     * GET /api/country/{countryCode}
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    public Mono<ResponseEntity<?>> get(
+            // HTTP header: Authorization
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+            String authorization,
+
+            // Query parameter: access_token
+            @RequestParam(value = "access_token", required = false)
+            String accessToken,
+
+            // Path parameter: countryCode
+            @PathVariable("countryCode")
+            String countryCode,
+
+            // HTTP header: If-None-Match
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+            String ifNoneMatch
+    )
+    {
+        return process(extractAccessToken(authorization, accessToken), countryCode, ifNoneMatch);
+    }
+
+
+    /**
+     * POST /api/country/{countryCode}
+     */
+    @RequestMapping(
+            method   = RequestMethod.POST,
+            consumes = { MediaType.APPLICATION_FORM_URLENCODED_VALUE })
+    public Mono<ResponseEntity<?>> post(
+            // HTTP header: Authorization
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+            String authorization,
+
+            // Path parameter: countryCode
+            @PathVariable("countryCode") String countryCode,
+
+            ServerWebExchange exchange
+    )
+    {
+        // Unlike Spring MVC, @RequestParam does not bind form parameters
+        // in Spring WebFlux, so read the form data explicitly.
+        return exchange.getFormData().flatMap(form -> process(
+                extractAccessToken(authorization, form.getFirst("access_token")), countryCode, null));
+    }
+
+
+    private Mono<ResponseEntity<?>> process(
+            String accessToken, String countryCode, String ifNoneMatch)
+    {
+        // Validate the access token, and then build the response.
+        return validateAccessToken(accessToken, null, null)
+                .<ResponseEntity<?>>map(info -> mCountryResponseTable.get(
+                        CountryEndpoint.lookup(countryCode), ifNoneMatch))
+                .onErrorResume(e -> Mono.just(toResponseEntity(e)));
+    }
+}
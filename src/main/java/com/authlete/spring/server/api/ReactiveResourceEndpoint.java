@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.util.concurrent.CompletableFuture;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response.Status;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import com.authlete.common.dto.IntrospectionRequest;
+import com.authlete.common.dto.IntrospectionResponse;
+import com.authlete.common.web.BearerToken;
+import com.authlete.jakarta.AccessTokenInfo;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * The reactive counterpart of {@link SpringResourceEndpoint}.
+ *
+ * <p>
+ * Access tokens are validated in the same way as {@link
+ * SpringResourceEndpoint} does, using the same caches and local checks,
+ * but introspection requests are sent by {@link ReactiveAuthleteClient}
+ * without blocking the calling thread.
+ * </p>
+ */
+public class ReactiveResourceEndpoint
+{
+    /**
+     * Non-blocking client of the Authlete APIs.
+     */
+    @Autowired
+    private ReactiveAuthleteClient mAuthleteClient;
+
+
+    /**
+     * Syntax checker of access tokens.
+     */
+    @Autowired
+    private AccessTokenPrevalidator mAccessTokenPrevalidator;
+
+
+    /**
+     * Cache of results of access token introspection.
+     */
+    @Autowired
+    private AccessTokenCache mAccessTokenCache;
+
+
+    /**
+     * Local validator of JWT access tokens.
+     */
+    @Autowired
+    private JwtAccessTokenValidator mJwtAccessTokenValidator;
+
+
+    /**
+     * Cache of access tokens rejected recently.
+     */
+    @Autowired
+    private RejectedAccessTokenCache mRejectedAccessTokenCache;
+
+
+    /**
+     * Metrics of the resource server.
+     */
+    @Autowired
+    private ResourceServerMetrics mResourceServerMetrics;
+
+
+    /**
+     * Introspection requests in flight, shared by all the endpoints.
+     */
+    @Autowired
+    private SingleFlight mIntrospections;
+
+
+    /**
+     * Get the non-blocking client of the Authlete APIs.
+     */
+    protected ReactiveAuthleteClient getAuthleteClient()
+    {
+        return mAuthleteClient;
+    }
+
+
+    /**
+     * Get the syntax checker of access tokens.
+     */
+    protected AccessTokenPrevalidator getAccessTokenPrevalidator()
+    {
+        return mAccessTokenPrevalidator;
+    }
+
+
+    /**
+     * Get information about an access token without calling the Authlete
+     * APIs, i.e. from the cache of introspection results or from the JWT
+     * access token itself.
+     *
+     * @return
+     *         Information about the access token, or {@code null} if it is
+     *         not available locally.
+     *
+     * @throws WebApplicationException
+     *         The access token is a JWT that is definitely invalid.
+     */
+    protected AccessTokenInfo findLocalAccessTokenInfo(String accessToken)
+    {
+        AccessTokenInfo info = mAccessTokenCache.peek(accessToken);
+
+        if (info != null)
+        {
+            return info;
+        }
+
+        return mJwtAccessTokenValidator.validate(accessToken);
+    }
+
+
+    /**
+     * Extract an access token from either the {@code Authorization} header
+     * or the request parameters. The {@code Authorization} header takes
+     * precedence.
+     */
+    protected String extractAccessToken(String authorization, String accessTokenInRequestParameters)
+    {
+        String accessToken = BearerToken.parse(authorization);
+
+        if (accessToken != null)
+        {
+            return accessToken;
+        }
+
+        return accessTokenInRequestParameters;
+    }
+
+
+    /**
+     * Validate an access token.
+     *
+     * @param accessToken
+     *         An access token to be validated.
+     *
+     * @param requiredScopes
+     *         Scopes that the access token must have. May be {@code null}.
+     *
+     * @param requiredSubject
+     *         Subject that the access token must be associated with.
+     *         May be {@code null}.
+     *
+     * @return
+     *         A {@link Mono} that emits information about the access token,
+     *         or signals a {@link WebApplicationException} when the access
+     *         token is invalid.
+     */
+    protected Mono<AccessTokenInfo> validateAccessToken(
+            String accessToken, String[] requiredScopes, String requiredSubject)
+    {
+        long start = System.nanoTime();
+
+        // Record the time and the outcome of the validation.
+        return validate(accessToken, requiredScopes, requiredSubject)
+                .doOnSuccess(info -> mResourceServerMetrics.recordValidation(start, null))
+                .doOnError(e -> mResourceServerMetrics.recordValidation(start, e));
+    }
+
+
+    private Mono<AccessTokenInfo> validate(
+            String accessToken, String[] requiredScopes, String requiredSubject)
+    {
+        // If the access token is missing or malformed.
+        RejectedAccessTokenException malformed = mAccessTokenPrevalidator.check(accessToken);
+
+        if (malformed != null)
+        {
+            return Mono.error(malformed);
+        }
+
+        Mono<AccessTokenInfo> info;
+
+        try
+        {
+            info = getCachedOrValidate(accessToken);
+        }
+        catch (WebApplicationException e)
+        {
+            return Mono.error(e);
+        }
+
+        // Check the requirements against the information.
+        return info.doOnNext(i -> AccessTokenRequirements.check(i, requiredScopes, requiredSubject));
+    }
+
+
+    private Mono<AccessTokenInfo> getCachedOrValidate(String accessToken)
+    {
+        // The refresher is executed by the background threads of the cache,
+        // so it is allowed to block there.
+        AccessTokenInfo info = mAccessTokenCache.get(
+                accessToken, token -> validateUncached(token).block());
+
+        if (info != null)
+        {
+            return Mono.just(info);
+        }
+
+        return validateUncached(accessToken);
+    }
+
+
+    private Mono<AccessTokenInfo> validateUncached(String accessToken)
+    {
+        // If the access token has been rejected recently.
+        RejectedAccessTokenException rejected = mRejectedAccessTokenCache.get(accessToken);
+
+        if (rejected != null)
+        {
+            return Mono.error(rejected);
+        }
+
+        AccessTokenInfo info;
+
+        try
+        {
+            info = mJwtAccessTokenValidator.validate(accessToken);
+        }
+        catch (WebApplicationException e)
+        {
+            return Mono.error(mRejectedAccessTokenCache.reject(accessToken, e));
+        }
+
+        // If the access token has been validated locally.
+        if (info != null)
+        {
+            mAccessTokenCache.put(accessToken, info);
+
+            return Mono.just(info);
+        }
+
+        return introspect(accessToken)
+                .onErrorMap(WebApplicationException.class,
+                        e -> mRejectedAccessTokenCache.reject(accessToken, e));
+    }
+
+
+    /**
+     * Introspect the access token without any requirement. Concurrent
+     * subscribers for the same access token share one request.
+     */
+    private Mono<AccessTokenInfo> introspect(String accessToken)
+    {
+        CompletableFuture<AccessTokenInfo> future = mIntrospections.executeAsync(accessToken,
+                () -> mAuthleteClient
+                        .introspection(new IntrospectionRequest().setToken(accessToken))
+                        .map(response -> toAccessTokenInfo(accessToken, response))
+                        // Fail rather than complete the shared future with
+                        // null, which the subscribers would take as valid.
+                        .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                                "The introspection API returned no response.")))
+                        .doOnNext(info -> mAccessTokenCache.put(accessToken, info))
+                        // Subscribes at once.
+                        .toFuture());
+
+        // Cancellation by this subscriber must not cancel the shared request.
+        return Mono.fromFuture(future, true);
+    }
+
+
+    /**
+     * Convert a response from the introspection API in the same way as
+     * {@code AccessTokenValidator} of authlete-java-jakarta does.
+     */
+    private static AccessTokenInfo toAccessTokenInfo(
+            String accessToken, IntrospectionResponse response)
+    {
+        String content = response.getResponseContent();
+
+        switch (response.getAction())
+        {
+            case OK:
+                return new AccessTokenInfo(accessToken, response);
+
+            case BAD_REQUEST:
+                throw new WebApplicationException(BearerErrors.response(Status.BAD_REQUEST, content));
+
+            case UNAUTHORIZED:
+                throw new WebApplicationException(BearerErrors.response(Status.UNAUTHORIZED, content));
+
+            case FORBIDDEN:
+                throw new WebApplicationException(BearerErrors.response(Status.FORBIDDEN, content));
+
+            case INTERNAL_SERVER_ERROR:
+            default:
+                throw new WebApplicationException(BearerErrors.response(Status.INTERNAL_SERVER_ERROR, content));
+        }
+    }
+
+
+    /**
+     * Convert an error signaled during processing of a request to a
+     * {@link ResponseEntity} instance. Errors other than {@link
+     * WebApplicationException}, e.g. a failure to communicate with
+     * the Authlete server, result in "500 Internal Server Error".
+     */
+    protected ResponseEntity<?> toResponseEntity(Throwable error)
+    {
+        if (error instanceof WebApplicationException)
+        {
+            return toResponseEntity((WebApplicationException)error);
+        }
+
+        return toResponseEntity(new WebApplicationException(BearerErrors.response(
+                Status.INTERNAL_SERVER_ERROR, BearerErrors.challenge("server_error",
+                        "Failed to communicate with the Authlete server.", null))));
+    }
+
+
+    /**
+     * Convert a {@link WebApplicationException} instance to
+     * a {@link ResponseEntity} instance.
+     */
+    protected ResponseEntity<?> toResponseEntity(WebApplicationException exception)
+    {
+        // If the response has been built in advance.
+        if (exception instanceof RejectedAccessTokenException)
+        {
+            return ((RejectedAccessTokenException)exception).getResponseEntity();
+        }
+
+        return new ResponseEntityBuilder().exception(exception).build();
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.util.Optional;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response.Status;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import com.authlete.common.dto.UserInfoIssueRequest;
+import com.authlete.common.dto.UserInfoIssueResponse;
+import com.authlete.common.dto.UserInfoRequest;
+import com.authlete.common.dto.UserInfoResponse;
+import com.authlete.common.types.User;
+import com.authlete.common.util.Utils;
+import com.authlete.jakarta.AccessTokenInfo;
+import com.authlete.spring.server.db.UserClaim;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+
+/**
+ * The reactive counterpart of {@link UserInfoEndpoint}.
+ *
+ * <p>
+ * The API path, the request parameters and the responses are the same
+ * as those of {@link UserInfoEndpoint}. This endpoint is used instead of
+ * {@link UserInfoEndpoint} when the application runs as a reactive web
+ * application ({@code spring.main.web-application-type=reactive}).
+ * </p>
+ *
+ * <p>
+ * The flow is the same as the one of {@code UserInfoRequestHandler} of
+ * authlete-java-jakarta: the access token is passed to the
+ * {@code /auth/userinfo} API, claims of the user are collected by
+ * {@link UserInfoRequestHandlerSpiImpl}, and the response is built by
+ * the {@code /auth/userinfo/issue} API. Both API calls are non-blocking.
+ * The user is looked up on the bounded elastic scheduler because the
+ * user store may block.
+ * Claims are collected in a simplified way: verified claims are not
+ * supported.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/userinfo")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserInfoEndpoint extends ReactiveResourceEndpoint
+{
+    /**
+     * Cache of successful responses.
+     */
+    @Autowired
+    private UserInfoResponseCache mUserInfoResponseCache;
+
+
+    /**
+     * The stateless implementation of {@code UserInfoRequestHandlerSpi}.
+     */
+    @Autowired
+    private UserInfoRequestHandlerSpiImpl mUserInfoRequestHandlerSpi;
+
+
+    /**
+     * The userinfo endpoint for {@code GET} method.
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    public Mono<ResponseEntity<?>> get(
+            // HTTP header: Authorization
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+            String authorization,
+
+            // Query parameter: access_token
+            @RequestParam(value = "access_token", required = false)
+            String accessToken
+    )
+    {
+        // Handle the userinfo request.
+        return handle(extractAccessToken(authorization, accessToken));
+    }
+
+
+    /**
+     * The userinfo endpoint for {@code POST} method.
+     */
+    @RequestMapping(
+            method   = RequestMethod.POST,
+            consumes = { MediaType.APPLICATION_FORM_URLENCODED_VALUE })
+    public Mono<ResponseEntity<?>> post(
+            // HTTP header: Authorization
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+            String authorization,
+
+            ServerWebExchange exchange
+    )
+    {
+        // Handle the userinfo request.
+        return exchange.getFormData().flatMap(form -> handle(
+                extractAccessToken(authorization, form.getFirst("access_token"))));
+    }
+
+
+    /**
+     * Handle the userinfo request.
+     */
+    private Mono<ResponseEntity<?>> handle(String accessToken)
+    {
+        // If the access token is missing or malformed, reject the request
+        // without asking the Authlete server.
+        RejectedAccessTokenException malformed = getAccessTokenPrevalidator().check(accessToken);
+
+        if (malformed != null)
+        {
+            return Mono.just(malformed.getResponseEntity());
+        }
+
+        // If a response for the access token has been cached.
+        ResponseEntity<?> cached = mUserInfoResponseCache.get(accessToken);
+
+        if (cached != null)
+        {
+            return Mono.just(cached);
+        }
+
+        // Taken before the user is looked up. See UserInfoResponseCache.
+        long generation = mUserInfoResponseCache.generation();
+
+        return getAuthleteClient()
+                .userinfo(new UserInfoRequest().setToken(accessToken))
+                .flatMap(r -> issue(accessToken, r)
+                        .flatMap(entity -> cache(accessToken, r.getSubject(), entity, generation)))
+                .onErrorResume(e -> Mono.just(toResponseEntity(e)));
+    }
+
+
+    /**
+     * Cache a successful response. The expiration time of the access token
+     * is taken from {@link AccessTokenCache} or from the JWT access token
+     * without calling the Authlete APIs. Otherwise, the response is cached
+     * for a short time, or the access token is validated in the same way
+     * as other resource endpoints if {@code userinfo.cache.introspect} is
+     * {@code true}. See {@link UserInfoResponseCache} for the trade-off.
+     */
+    private Mono<ResponseEntity<?>> cache(
+            String accessToken, String subject, ResponseEntity<?> entity, long generation)
+    {
+        if (!mUserInfoResponseCache.isEnabled() || !entity.getStatusCode().is2xxSuccessful())
+        {
+            return Mono.just(entity);
+        }
+
+        AccessTokenInfo info;
+
+        try
+        {
+            info = findLocalAccessTokenInfo(accessToken);
+        }
+        catch (WebApplicationException e)
+        {
+            // The access token has become invalid in the meantime.
+            return Mono.just(entity);
+        }
+
+        if (info != null)
+        {
+            mUserInfoResponseCache.put(accessToken, info, entity, generation);
+            return Mono.just(entity);
+        }
+
+        if (!mUserInfoResponseCache.isIntrospectionEnabled())
+        {
+            // The expiration time of the access token is unknown.
+            mUserInfoResponseCache.put(accessToken, subject, entity, generation);
+            return Mono.just(entity);
+        }
+
+        return validateAccessToken(accessToken, null, null)
+                .<ResponseEntity<?>>map(info -> {
+                    mUserInfoResponseCache.put(accessToken, info, entity, generation);
+                    return entity;
+                })
+                // The access token has become invalid in the meantime.
+                .onErrorReturn(entity);
+    }
+
+
+    private Mono<ResponseEntity<?>> issue(String accessToken, UserInfoResponse response)
+    {
+        String content = response.getResponseContent();
+
+        switch (response.getAction())
+        {
+            case OK:
+                break;
+
+            case BAD_REQUEST:
+                return error(Status.BAD_REQUEST, content);
+
+            case UNAUTHORIZED:
+                return error(Status.UNAUTHORIZED, content);
+
+            case FORBIDDEN:
+                return error(Status.FORBIDDEN, content);
+
+            case INTERNAL_SERVER_ERROR:
+            default:
+                return error(Status.INTERNAL_SERVER_ERROR, content);
+        }
+
+        // Collect claims of the user and let the Authlete server build
+        // the userinfo response. The user store may block (e.g. JDBC), so
+        // the claims are collected off the event loop.
+        return Mono.fromCallable(() -> Optional.ofNullable(
+                        collectClaims(response.getSubject(), response.getClaims())))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(claims -> getAuthleteClient().userinfoIssue(
+                        new UserInfoIssueRequest().setToken(accessToken).setClaims(claims.orElse(null))))
+                .flatMap(this::buildResponse);
+    }
+
+
+    private Mono<ResponseEntity<?>> buildResponse(UserInfoIssueResponse response)
+    {
+        String content = response.getResponseContent();
+
+        switch (response.getAction())
+        {
+            case JSON:
+                return ok("application/json;charset=UTF-8", content);
+
+            case JWT:
+                return ok("application/jwt", content);
+
+            case BAD_REQUEST:
+                return error(Status.BAD_REQUEST, content);
+
+            case UNAUTHORIZED:
+                return error(Status.UNAUTHORIZED, content);
+
+            case FORBIDDEN:
+                return error(Status.FORBIDDEN, content);
+
+            case INTERNAL_SERVER_ERROR:
+            default:
+                return error(Status.INTERNAL_SERVER_ERROR, content);
+        }
+    }
+
+
+    /**
+     * Collect the claims of the user as a JSON object. A claim name may
+     * have a language tag, e.g. {@code "name#ja"}. The JSON object is
+     * built from the pre-rendered fragments of the claims (see {@link
+     * com.authlete.spring.server.db.IndexedUser#getClaimFragment(UserClaim,
+     * String) IndexedUser.getClaimFragment}), so the values are not
+     * serialized again for a cached user.
+     */
+    private String collectClaims(String subject, String[] claimNames)
+    {
+        if (claimNames == null || claimNames.length == 0)
+        {
+            return null;
+        }
+
+        // No per-request context is needed. The user is passed explicitly.
+        User user = mUserInfoRequestHandlerSpi.lookUpUser(subject, claimNames);
+
+        return collectClaims(user, claimNames);
+    }
+
+
+    private String collectClaims(User user, String[] claimNames)
+    {
+        StringBuilder json = null;
+
+        for (String claimName : claimNames)
+        {
+            if (claimName == null || claimName.isEmpty())
+            {
+                continue;
+            }
+
+            int    sharp       = claimName.indexOf('#');
+            String name        = (sharp < 0) ? claimName : claimName.substring(0, sharp);
+            String languageTag = (sharp < 0) ? null      : claimName.substring(sharp + 1);
+
+            // Resolve the claim name once, and fetch the fragment by index.
+            String fragment = mUserInfoRequestHandlerSpi.getUserClaimFragment(
+                    user, UserClaim.of(name), languageTag);
+
+            if (fragment == null)
+            {
+                continue;
+            }
+
+            json = (json == null) ? new StringBuilder(256).append('{') : json.append(',');
+
+            appendName(json, claimName).append(':').append(fragment);
+        }
+
+        return (json == null) ? null : json.append('}').toString();
+    }
+
+
+    private static StringBuilder appendName(StringBuilder json, String name)
+    {
+        for (int i = 0; i < name.length(); ++i)
+        {
+            char c = name.charAt(i);
+
+            if (c < 0x20 || c == '"' || c == '\\')
+            {
+                // Needs escaping. Rare for claim names.
+                return json.append(Utils.toJson(name));
+            }
+        }
+
+        return json.append('"').append(name).append('"');
+    }
+
+
+    private static Mono<ResponseEntity<?>> ok(String contentType, String content)
+    {
+        return Mono.just(new ResponseEntityBuilder()
+                .ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .header(HttpHeaders.PRAGMA, "no-cache")
+                .body(content)
+                .build());
+    }
+
+
+    private Mono<ResponseEntity<?>> error(Status status, String challenge)
+    {
+        return Mono.just(toResponseEntity(
+                new WebApplicationException(BearerErrors.response(status, challenge))));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.time.Duration;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+
+/**
+ * A short-lived cache of access tokens that have been rejected as invalid.
+ *
+ * <p>
+ * Entries are keyed by the hash value of an access token (not the access
+ * token itself) and hold a pre-built error response. Repeated requests
+ * with the same invalid or expired access token are answered from this
+ * cache without asking the Authlete server.
+ * </p>
+ *
+ * <p>
+ * Only "401 Unauthorized" responses are cached. Other errors, e.g. errors
+ * caused by a failure on the Authlete side, are not remembered.
+ * </p>
+ */
+@Component
+public class RejectedAccessTokenCache
+{
+    private final boolean mEnabled;
+    private final Cache<String, RejectedAccessTokenException> mCache;
+
+
+    public RejectedAccessTokenCache(
+            @Value("${token.negative-cache.enabled:true}") boolean enabled,
+            @Value("${token.negative-cache.max-size:10000}") long maxSize,
+            @Value("${token.negative-cache.ttl:10s}") Duration ttl)
+    {
+        mEnabled = enabled;
+        mCache   = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+
+    /**
+     * Get the cached rejection of the access token.
+     *
+     * @return
+     *         An exception that carries a pre-built error response, or
+     *         {@code null} if the access token has not been rejected
+     *         recently.
+     */
+    RejectedAccessTokenException get(String accessToken)
+    {
+        if (!mEnabled)
+        {
+            return null;
+        }
+
+        return mCache.getIfPresent(TokenHash.of(accessToken));
+    }
+
+
+    /**
+     * Remember the rejection of the access token if it is cacheable.
+     *
+     * @param accessToken
+     *         The rejected access token.
+     *
+     * @param exception
+     *         The exception that represents the rejection.
+     *
+     * @return
+     *         The exception that should be thrown. When the rejection
+     *         has been cached, an exception that carries a pre-built
+     *         error response is returned. Otherwise, {@code exception}
+     *         is returned as is.
+     */
+    WebApplicationException reject(String accessToken, WebApplicationException exception)
+    {
+        Response response = exception.getResponse();
+
+        if (!mEnabled || response == null ||
+                response.getStatus() != Response.Status.UNAUTHORIZED.getStatusCode())
+        {
+            return exception;
+        }
+
+        RejectedAccessTokenException rejected = new RejectedAccessTokenException(response);
+
+        mCache.put(TokenHash.of(accessToken), rejected);
+
+        return rejected;
+    }
+}
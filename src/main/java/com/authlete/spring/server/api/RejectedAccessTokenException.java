@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.springframework.http.ResponseEntity;
+
+
+/**
+ * A {@link WebApplicationException} that carries a pre-built
+ * {@link ResponseEntity}.
+ *
+ * <p>
+ * Instances are created once and thrown repeatedly, so they don't
+ * record a stack trace. {@link SpringResourceEndpoint#toResponseEntity(
+ * WebApplicationException) toResponseEntity()} returns the pre-built
+ * response entity as is.
+ * </p>
+ */
+class RejectedAccessTokenException extends WebApplicationException
+{
+    private static final long serialVersionUID = 1L;
+
+
+    private final transient ResponseEntity<?> mResponseEntity;
+
+
+    RejectedAccessTokenException(Response response)
+    {
+        super(response);
+
+        mResponseEntity = new ResponseEntityBuilder().response(response).buildShared();
+    }
+
+
+    /**
+     * Get the pre-built response entity.
+     */
+    ResponseEntity<?> getResponseEntity()
+    {
+        return mResponseEntity;
+    }
+
+
+    @Override
+    public Throwable fillInStackTrace()
+    {
+        // The stack trace would be meaningless because this instance is reused.
+        return this;
+    }
+}
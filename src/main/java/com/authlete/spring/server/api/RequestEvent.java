@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Timespan;
+import com.authlete.spring.server.api.ResourceServerMetrics.ValidationOutcome;
+
+
+/**
+ * The base of JDK Flight Recorder events of requests handled by the
+ * resource server.
+ *
+ * <p>
+ * Use an event as follows. When no recording is running, or the event is
+ * disabled in the recording settings, {@code isEnabled()} and {@code
+ * shouldCommit()} return {@code false}, nothing is computed, and the JIT
+ * compiler can eliminate the allocation of the event.
+ * </p>
+ *
+ * <pre>
+ * AccessTokenValidationEvent event = new AccessTokenValidationEvent();
+ * event.start();
+ * ...
+ * event.finish("country", accessToken, outcome);
+ * </pre>
+ *
+ * <p>
+ * The remote latency is the time spent in calls of the Authlete APIs by
+ * the thread between {@link #start()} and {@link #finish(String, String,
+ * ValidationOutcome)}. The calls are reported by {@link
+ * #addRemoteCall(long)} only while {@link AuthleteApiCallEvent} is enabled,
+ * so no per-thread state is created when no recording is running.
+ * </p>
+ */
+abstract class RequestEvent extends jdk.jfr.Event
+{
+    /**
+     * The number of calls of the Authlete APIs by the current thread and
+     * the total time of the calls in nanoseconds.
+     */
+    private static final ThreadLocal<long[]> sRemoteCalls = ThreadLocal.withInitial(() -> new long[2]);
+
+
+    @Label("Endpoint")
+    String endpoint;
+
+
+    @Label("Token Hash Prefix")
+    @Description("The first 8 characters of the base64url-encoded SHA-256 hash of the access token")
+    String tokenHash;
+
+
+    @Label("Outcome")
+    @Description("valid, invalid, expired, insufficient_scope, shed or authlete_error")
+    String outcome;
+
+
+    @Label("Cache Hit")
+    @Description("Whether the request was answered from a cache")
+    boolean cacheHit;
+
+
+    @Label("Remote Calls")
+    @Description("The number of calls of the Authlete APIs")
+    int remoteCalls;
+
+
+    @Label("Remote Latency")
+    @Description("The total time spent in calls of the Authlete APIs")
+    @Timespan(Timespan.NANOSECONDS)
+    long remoteLatency;
+
+
+    private transient boolean mRemoteCallsTracked;
+    private transient long mRemoteCallsAtStart;
+    private transient long mRemoteNanosAtStart;
+
+
+    /**
+     * Report a call of an Authlete API by the current thread. Call this
+     * only while {@link AuthleteApiCallEvent} is enabled.
+     *
+     * @param nanos
+     *         The time of the call in nanoseconds.
+     */
+    static void addRemoteCall(long nanos)
+    {
+        long[] calls = sRemoteCalls.get();
+
+        calls[0]++;
+        calls[1] += nanos;
+    }
+
+
+    /**
+     * Start the event.
+     */
+    void start()
+    {
+        if (isEnabled())
+        {
+            long[] calls = sRemoteCalls.get();
+
+            mRemoteCallsTracked = true;
+            mRemoteCallsAtStart = calls[0];
+            mRemoteNanosAtStart = calls[1];
+        }
+
+        begin();
+    }
+
+
+    /**
+     * End the event and commit it if it should be.
+     *
+     * @param endpointName
+     *         The name of the endpoint.
+     *
+     * @param accessToken
+     *         The access token. May be {@code null}.
+     *
+     * @param result
+     *         The outcome.
+     */
+    void finish(String endpointName, String accessToken, ValidationOutcome result)
+    {
+        end();
+
+        if (!shouldCommit())
+        {
+            return;
+        }
+
+        endpoint  = endpointName;
+        tokenHash = (accessToken == null || accessToken.isEmpty())
+                  ? null : TokenHash.of(accessToken).substring(0, 8);
+        outcome   = result.getTag();
+
+        // Unless the recording started in the middle of the request.
+        if (mRemoteCallsTracked)
+        {
+            long[] calls = sRemoteCalls.get();
+
+            remoteCalls   = (int)(calls[0] - mRemoteCallsAtStart);
+            remoteLatency = calls[1] - mRemoteNanosAtStart;
+        }
+
+        commit();
+    }
+}
@@ -0,0 +1,549 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import org.springframework.stereotype.Component;
+import com.authlete.common.api.AuthleteApi;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+
+/**
+ * Metrics of the resource server.
+ *
+ * <table border="1" cellpadding="5" style="border-collapse: collapse;">
+ *   <tr><th>Name</th><th>Type</th><th>Tags</th></tr>
+ *   <tr><td>{@code token.validation}</td><td>timer</td>
+ *       <td>{@code outcome}: {@code valid}, {@code invalid}, {@code expired},
+ *       {@code insufficient_scope}, {@code shed} or {@code authlete_error}</td></tr>
+ *   <tr><td>{@code authlete.api}</td><td>timer</td>
+ *       <td>{@code api}: the method of {@code AuthleteApi}, e.g.
+ *       {@code introspection}; {@code action}: the action in the response
+ *       in lower case, e.g. {@code ok}, or {@code error} when the call
+ *       failed</td></tr>
+ *   <tr><td>{@code authlete.api.errors}</td><td>counter</td>
+ *       <td>{@code api}</td></tr>
+ *   <tr><td>{@code user.lookup}</td><td>timer</td>
+ *       <td>{@code result}: {@code found} or {@code not_found}</td></tr>
+ *   <tr><td>{@code response.build}</td><td>timer</td>
+ *       <td>{@code endpoint}</td></tr>
+ *   <tr><td>{@code authlete.limiter.limit}</td><td>gauge</td>
+ *       <td>-</td></tr>
+ *   <tr><td>{@code authlete.limiter.in.flight}</td><td>gauge</td>
+ *       <td>-</td></tr>
+ *   <tr><td>{@code authlete.limiter.rejections}</td><td>counter</td>
+ *       <td>-</td></tr>
+ * </table>
+ *
+ * <p>
+ * The meters of {@code authlete.limiter} are registered only when {@link
+ * AuthleteConcurrencyLimiter} is enabled.
+ * </p>
+ *
+ * <p>
+ * The timers of token validation and Authlete API calls publish
+ * percentile histograms, so that percentiles such as p99 can be computed
+ * by the monitoring system (e.g. {@code histogram_quantile} of Prometheus)
+ * across instances. Meters are resolved once and reused, so recording a
+ * value does not allocate.
+ * </p>
+ *
+ * <p>
+ * Calls of the Authlete APIs through {@link #instrument(AuthleteApi)}
+ * are also recorded as {@link AuthleteApiCallEvent JDK Flight Recorder
+ * events}.
+ * </p>
+ */
+@Component
+public class ResourceServerMetrics
+{
+    /**
+     * The outcome of validation of an access token.
+     */
+    enum ValidationOutcome
+    {
+        VALID,
+        INVALID,
+        EXPIRED,
+        INSUFFICIENT_SCOPE,
+
+        /**
+         * The request was rejected by {@link AuthleteConcurrencyLimiter}
+         * without calling the Authlete server.
+         */
+        SHED,
+
+        AUTHLETE_ERROR;
+
+
+        /**
+         * The value of the {@code outcome} tag.
+         */
+        String getTag()
+        {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+
+        /**
+         * Classify an error thrown by validation of an access token.
+         *
+         * @param error
+         *         An error, or {@code null} if the access token is valid.
+         */
+        static ValidationOutcome of(Throwable error)
+        {
+            if (error == null)
+            {
+                return VALID;
+            }
+
+            // Load shedding is not a failure of the Authlete server.
+            if (error instanceof OverloadedException)
+            {
+                return SHED;
+            }
+
+            // Errors other than error responses, e.g. a network failure.
+            if (!(error instanceof WebApplicationException))
+            {
+                return AUTHLETE_ERROR;
+            }
+
+            return of(((WebApplicationException)error).getResponse());
+        }
+
+
+        /**
+         * Classify a response of an endpoint or an error response thrown
+         * by validation of an access token.
+         */
+        static ValidationOutcome of(Response response)
+        {
+            switch (response.getStatus())
+            {
+                case 200:
+                    return VALID;
+
+                case 400:
+                    return INVALID;
+
+                case 401:
+                    return isExpired(response) ? EXPIRED : INVALID;
+
+                case 403:
+                    return INSUFFICIENT_SCOPE;
+
+                case 503:
+                    // Only AuthleteConcurrencyLimiter responds with 503.
+                    return SHED;
+
+                default:
+                    return AUTHLETE_ERROR;
+            }
+        }
+
+
+        private static boolean isExpired(Response response)
+        {
+            // e.g. error_description="[A065304] The access token has expired."
+            String challenge = response.getHeaderString(HttpHeaders.WWW_AUTHENTICATE);
+
+            return challenge != null && challenge.contains("expired");
+        }
+    }
+
+
+    private static final String ERROR_ACTION = "error";
+
+
+    /**
+     * The {@code getAction()} method of each response class of the
+     * Authlete APIs, or {@code null} if the class has no action.
+     */
+    private static final ClassValue<Method> sActionGetters = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(Class<?> type)
+        {
+            try
+            {
+                Method method = type.getMethod("getAction");
+
+                return method.getReturnType().isEnum() ? method : null;
+            }
+            catch (NoSuchMethodException e)
+            {
+                return null;
+            }
+        }
+    };
+
+
+    /**
+     * The values of the {@code action} tag, i.e. the names of the
+     * constants of each action enum in lower case.
+     */
+    private static final ClassValue<String[]> sActionTags = new ClassValue<String[]>() {
+        @Override
+        protected String[] computeValue(Class<?> type)
+        {
+            Object[] constants = type.getEnumConstants();
+            String[] tags      = new String[constants.length];
+
+            for (int i = 0; i < constants.length; i++)
+            {
+                tags[i] = ((Enum<?>)constants[i]).name().toLowerCase(Locale.ROOT);
+            }
+
+            return tags;
+        }
+    };
+
+
+    private final MeterRegistry mRegistry;
+    private final Timer[] mValidationTimers;
+    private final Timer mUserFoundTimer;
+    private final Timer mUserNotFoundTimer;
+    private final ConcurrentMap<String, ConcurrentMap<String, Timer>> mApiTimers =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Timer>>();
+    private final ConcurrentMap<String, Counter> mApiErrorCounters =
+            new ConcurrentHashMap<String, Counter>();
+    private final ConcurrentMap<String, Timer> mResponseBuildTimers =
+            new ConcurrentHashMap<String, Timer>();
+
+
+    public ResourceServerMetrics(MeterRegistry registry)
+    {
+        mRegistry         = registry;
+        mValidationTimers = new Timer[ValidationOutcome.values().length];
+
+        for (ValidationOutcome outcome : ValidationOutcome.values())
+        {
+            mValidationTimers[outcome.ordinal()] = Timer.builder("token.validation")
+                    .description("Validation of access tokens")
+                    .tag("outcome", outcome.getTag())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry);
+        }
+
+        mUserFoundTimer    = userLookupTimer("found");
+        mUserNotFoundTimer = userLookupTimer("not_found");
+    }
+
+
+    private Timer userLookupTimer(String result)
+    {
+        return Timer.builder("user.lookup")
+                .description("Lookups of users by subject")
+                .tag("result", result)
+                .register(mRegistry);
+    }
+
+
+    /**
+     * Get the registry of the meters.
+     */
+    public MeterRegistry getRegistry()
+    {
+        return mRegistry;
+    }
+
+
+    /**
+     * Publish the state of the concurrency limiter of the Authlete API
+     * calls. The values are read from the limiter when the meters are
+     * scraped, so requests don't record anything.
+     */
+    void bindConcurrencyLimiter(AuthleteConcurrencyLimiter limiter)
+    {
+        Gauge.builder("authlete.limiter.limit", limiter, AuthleteConcurrencyLimiter::getLimit)
+                .description("The limit of concurrent calls of the Authlete APIs")
+                .register(mRegistry);
+
+        Gauge.builder("authlete.limiter.in.flight", limiter, AuthleteConcurrencyLimiter::getInFlight)
+                .description("Calls of the Authlete APIs in flight")
+                .register(mRegistry);
+
+        FunctionCounter.builder("authlete.limiter.rejections", limiter, AuthleteConcurrencyLimiter::getRejections)
+                .description("Requests shed because the limit was reached")
+                .register(mRegistry);
+    }
+
+
+    /**
+     * Record validation of an access token.
+     *
+     * @param startNanos
+     *         The value of {@link System#nanoTime()} when the validation
+     *         started.
+     *
+     * @param error
+     *         The error thrown by the validation, or {@code null} if the
+     *         access token is valid.
+     */
+    public void recordValidation(long startNanos, Throwable error)
+    {
+        recordValidation(startNanos, ValidationOutcome.of(error));
+    }
+
+
+    /**
+     * Record validation of an access token whose outcome has been
+     * classified.
+     */
+    void recordValidation(long startNanos, ValidationOutcome outcome)
+    {
+        mValidationTimers[outcome.ordinal()]
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * Record a call of an Authlete API.
+     *
+     * @param api
+     *         The name of the API, e.g. {@code "introspection"}.
+     *
+     * @param startNanos
+     *         The value of {@link System#nanoTime()} when the call started.
+     *
+     * @param response
+     *         The response from the API. May be {@code null} when the call
+     *         failed.
+     *
+     * @param error
+     *         The error thrown by the call, or {@code null}.
+     */
+    public void recordAuthleteCall(String api, long startNanos, Object response, Throwable error)
+    {
+        long   elapsed = System.nanoTime() - startNanos;
+        String action  = (error == null) ? getAction(response) : ERROR_ACTION;
+
+        apiTimer(api, action).record(elapsed, TimeUnit.NANOSECONDS);
+
+        if (error != null)
+        {
+            mApiErrorCounters.computeIfAbsent(api, key -> Counter.builder("authlete.api.errors")
+                    .description("Failed calls of the Authlete APIs")
+                    .tag("api", key)
+                    .register(mRegistry)).increment();
+        }
+    }
+
+
+    private Timer apiTimer(String api, String action)
+    {
+        ConcurrentMap<String, Timer> timers = mApiTimers.get(api);
+
+        if (timers == null)
+        {
+            timers = mApiTimers.computeIfAbsent(api, key -> new ConcurrentHashMap<String, Timer>());
+        }
+
+        Timer timer = timers.get(action);
+
+        if (timer == null)
+        {
+            timer = timers.computeIfAbsent(action, key -> Timer.builder("authlete.api")
+                    .description("Calls of the Authlete APIs")
+                    .tag("api", api)
+                    .tag("action", key)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(mRegistry));
+        }
+
+        return timer;
+    }
+
+
+    private static String getAction(Object response)
+    {
+        Method getter = (response == null) ? null : sActionGetters.get(response.getClass());
+
+        if (getter == null)
+        {
+            return "none";
+        }
+
+        try
+        {
+            Enum<?> action = (Enum<?>)getter.invoke(response);
+
+            return (action == null) ? "none"
+                    : sActionTags.get(action.getDeclaringClass())[action.ordinal()];
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return "none";
+        }
+    }
+
+
+    /**
+     * Record a lookup of a user.
+     *
+     * @param startNanos
+     *         The value of {@link System#nanoTime()} when the lookup started.
+     *
+     * @param found
+     *         Whether the user was found.
+     */
+    public void recordUserLookup(long startNanos, boolean found)
+    {
+        (found ? mUserFoundTimer : mUserNotFoundTimer)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * Record building of a response.
+     *
+     * @param endpoint
+     *         The name of the endpoint, e.g. {@code "userinfo"}.
+     *
+     * @param startNanos
+     *         The value of {@link System#nanoTime()} when the building
+     *         started.
+     */
+    public void recordResponseBuild(String endpoint, long startNanos)
+    {
+        long  elapsed = System.nanoTime() - startNanos;
+        Timer timer   = mResponseBuildTimers.get(endpoint);
+
+        if (timer == null)
+        {
+            timer = mResponseBuildTimers.computeIfAbsent(endpoint, key -> Timer.builder("response.build")
+                    .description("Building of responses")
+                    .tag("endpoint", key)
+                    .register(mRegistry));
+        }
+
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * Wrap an {@link AuthleteApi} instance so that the calls of the APIs
+     * are recorded by {@link #recordAuthleteCall(String, long, Object,
+     * Throwable)}. Methods that don't call an API, e.g. {@code
+     * getSettings()}, are delegated as they are.
+     */
+    public AuthleteApi instrument(AuthleteApi api)
+    {
+        return (AuthleteApi)Proxy.newProxyInstance(
+                AuthleteApi.class.getClassLoader(), new Class<?>[] { AuthleteApi.class },
+                new TimedInvocationHandler(api));
+    }
+
+
+    /**
+     * An invocation handler that times the calls of the Authlete APIs.
+     */
+    private final class TimedInvocationHandler implements InvocationHandler
+    {
+        private final AuthleteApi mTarget;
+
+
+        TimedInvocationHandler(AuthleteApi target)
+        {
+            mTarget = target;
+        }
+
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            // If the method does not call an API.
+            if (sActionGetters.get(method.getReturnType()) == null)
+            {
+                return invokeTarget(method, args);
+            }
+
+            AuthleteApiCallEvent event = new AuthleteApiCallEvent();
+            event.begin();
+
+            long      start    = System.nanoTime();
+            Object    response = null;
+            Throwable error    = null;
+
+            try
+            {
+                response = invokeTarget(method, args);
+
+                return response;
+            }
+            catch (Throwable t)
+            {
+                error = t;
+                throw t;
+            }
+            finally
+            {
+                recordAuthleteCall(method.getName(), start, response, error);
+
+                event.end();
+
+                // Add the time to the enclosing request event, if any.
+                // Nothing is tracked per thread unless recording.
+                if (event.isEnabled())
+                {
+                    RequestEvent.addRemoteCall(System.nanoTime() - start);
+                }
+
+                if (event.shouldCommit())
+                {
+                    event.api    = method.getName();
+                    event.action = (error == null) ? getAction(response) : ERROR_ACTION;
+                    event.commit();
+                }
+            }
+        }
+
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable
+        {
+            try
+            {
+                return method.invoke(mTarget, args);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -17,6 +17,8 @@
 package com.authlete.spring.server.api;
 
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import jakarta.ws.rs.WebApplicationException;
@@ -24,13 +26,17 @@ import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.Response;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMapAdapter;
 
 
 public class ResponseEntityBuilder
 {
     private int mStatus;
     private HttpHeaders mHeaders;
+    private boolean mHeadersShared;
     private Object mBody;
 
 
@@ -62,6 +68,17 @@ public class ResponseEntityBuilder
             return this;
         }
 
+        // If the headers are a view of the headers of a JAX-RS response,
+        // copy them before modifying them.
+        if (mHeadersShared)
+        {
+            HttpHeaders copy = new HttpHeaders();
+            copy.addAll(mHeaders);
+
+            mHeaders       = copy;
+            mHeadersShared = false;
+        }
+
         mHeaders.add(headerName, headerValue);
 
         return this;
@@ -93,10 +110,11 @@ public class ResponseEntityBuilder
         mStatus = response.getStatus();
 
         // Replace the HTTP headers.
-        mHeaders = extractHeaders(response);
+        mHeaders       = adaptHeaders(response);
+        mHeadersShared = true;
 
         // Replace the response body.
-        mBody = response.getEntity();
+        mBody = adaptEntity(response.getEntity(), mHeaders);
 
         return this;
     }
@@ -114,21 +132,63 @@ public class ResponseEntityBuilder
 
 
     /**
-     * Convert HTTP headers of the response into an
-     * {@code HttpHeaders} instance.
+     * Wrap HTTP headers of the response as an {@code HttpHeaders} instance.
+     * The header values are not copied. The returned instance is a view of
+     * the headers of the response.
+     *
+     * <p>
+     * As before, headers without a name are ignored and a header without
+     * values is given a {@code null} value. Such headers require a copy,
+     * which is made by {@link #copyHeaders(MultivaluedMap)}.
+     * </p>
      */
-    private static HttpHeaders extractHeaders(Response response)
+    private static HttpHeaders adaptHeaders(Response response)
     {
-        HttpHeaders targetHeaders = new HttpHeaders();
         MultivaluedMap<String, String> sourceHeaders = response.getStringHeaders();
 
         // If the response does not have any header.
         if (sourceHeaders == null)
         {
             // Return an empty header list.
-            return targetHeaders;
+            return new HttpHeaders();
+        }
+
+        // If some headers need to be fixed.
+        if (!isWellFormed(sourceHeaders))
+        {
+            return copyHeaders(sourceHeaders);
+        }
+
+        // MultivaluedMap<String, String> is a Map<String, List<String>>.
+        return new HttpHeaders(new MultiValueMapAdapter<String, String>(sourceHeaders));
+    }
+
+
+    private static boolean isWellFormed(Map<String, List<String>> headers)
+    {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet())
+        {
+            String       headerName   = entry.getKey();
+            List<String> headerValues = entry.getValue();
+
+            if (headerName == null || headerName.length() == 0 ||
+                headerValues == null || headerValues.size() == 0)
+            {
+                return false;
+            }
         }
 
+        return true;
+    }
+
+
+    /**
+     * Copy HTTP headers into a new {@code HttpHeaders} instance.
+     */
+    private static HttpHeaders copyHeaders(Map<String, List<String>> sourceHeaders)
+    {
+        HttpHeaders targetHeaders = new HttpHeaders();
+
         // For each header name
         for (Map.Entry<String, List<String>> entry : sourceHeaders.entrySet())
         {
@@ -165,8 +225,69 @@ public class ResponseEntityBuilder
     }
 
 
+    /**
+     * Convert the entity of the response. A string that has been serialized
+     * already, e.g. JSON built by the Authlete server, is converted into
+     * bytes so that Spring writes it as is with a known content length.
+     * A string without {@code Content-Type} is left as is and is written as
+     * plain text, as before.
+     */
+    private static Object adaptEntity(Object entity, HttpHeaders headers)
+    {
+        if (!(entity instanceof String))
+        {
+            return entity;
+        }
+
+        String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+
+        if (contentType == null)
+        {
+            return entity;
+        }
+
+        return ((String)entity).getBytes(charsetOf(contentType));
+    }
+
+
+    private static Charset charsetOf(String contentType)
+    {
+        // Authlete returns JSON (UTF-8) and JWT (ASCII). Parse the content
+        // type only when it specifies a charset.
+        if (!contentType.contains("charset="))
+        {
+            return StandardCharsets.UTF_8;
+        }
+
+        Charset charset = MediaType.parseMediaType(contentType).getCharset();
+
+        return (charset != null) ? charset : StandardCharsets.UTF_8;
+    }
+
+
     public ResponseEntity<?> build()
     {
-        return ResponseEntity.status(mStatus).headers(mHeaders).body(mBody);
+        // The constructor wraps the headers without copying them.
+        return new ResponseEntity<Object>(mBody, mHeaders, HttpStatusCode.valueOf(mStatus));
+    }
+
+
+    /**
+     * Build a response entity that is served repeatedly, e.g. a pre-built
+     * error response or a cached response.
+     *
+     * <p>
+     * The view of the headers of a JAX-RS response created by {@link
+     * #response(Response)} converts the header values every time they are
+     * read, which pays off only for a response that is written once. Here
+     * the headers are copied once instead, into a read-only instance.
+     * </p>
+     */
+    public ResponseEntity<?> buildShared()
+    {
+        HttpHeaders headers = mHeadersShared ? copyHeaders(mHeaders) : mHeaders;
+
+        return new ResponseEntity<Object>(mBody,
+                HttpHeaders.readOnlyHttpHeaders(headers), HttpStatusCode.valueOf(mStatus));
     }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import com.authlete.jakarta.AccessTokenInfo;
+
+
+/**
+ * Coalescing of concurrent introspection of the same access token.
+ *
+ * <p>
+ * While a task for a key is in flight, other threads that request a task
+ * for the same key do not execute their own task but wait for the one in
+ * flight and receive its result. If the task throws an exception, all the
+ * waiting threads receive the same exception.
+ * </p>
+ *
+ * <p>
+ * Results are not remembered. Once the task in flight completes, the next
+ * request for the same key executes a new task.
+ * </p>
+ *
+ * <p>
+ * A single instance keyed by access token is shared by all the resource
+ * endpoints, so requests to different endpoints with the same access
+ * token share one call of the introspection API. Blocking endpoints use
+ * {@link #execute(String, Supplier)} and reactive endpoints use {@link
+ * #executeAsync(String, Supplier)}.
+ * </p>
+ */
+@Component
+class SingleFlight
+{
+    private final ConcurrentMap<String, CompletableFuture<AccessTokenInfo>> mInFlight =
+            new ConcurrentHashMap<String, CompletableFuture<AccessTokenInfo>>();
+
+
+    /**
+     * Execute the task, or wait for the task in flight for the same key.
+     *
+     * @param key
+     *         The key that identifies the task. Must not be {@code null}.
+     *
+     * @param task
+     *         The task to execute if no task for the key is in flight.
+     *
+     * @return
+     *         The result of the task.
+     *
+     * @throws RuntimeException
+     *         The exception thrown by the task.
+     */
+    AccessTokenInfo execute(String key, Supplier<AccessTokenInfo> task)
+    {
+        CompletableFuture<AccessTokenInfo> future   = new CompletableFuture<AccessTokenInfo>();
+        CompletableFuture<AccessTokenInfo> inFlight = mInFlight.putIfAbsent(key, future);
+
+        // If another thread is already executing a task for the key.
+        if (inFlight != null)
+        {
+            // Wait for the task and share its result.
+            return await(inFlight);
+        }
+
+        try
+        {
+            AccessTokenInfo result = task.get();
+
+            future.complete(result);
+
+            return result;
+        }
+        catch (RuntimeException | Error e)
+        {
+            // Let the waiting threads receive the same exception.
+            future.completeExceptionally(e);
+
+            throw e;
+        }
+        finally
+        {
+            mInFlight.remove(key, future);
+        }
+    }
+
+
+    /**
+     * Start the asynchronous task, or share the task in flight for the
+     * same key.
+     *
+     * @param key
+     *         The key that identifies the task. Must not be {@code null}.
+     *
+     * @param task
+     *         The task to start if no task for the key is in flight.
+     *
+     * @return
+     *         A future shared by all the callers for the key. Callers must
+     *         not complete or cancel it.
+     */
+    CompletableFuture<AccessTokenInfo> executeAsync(
+            String key, Supplier<CompletableFuture<AccessTokenInfo>> task)
+    {
+        CompletableFuture<AccessTokenInfo> future   = new CompletableFuture<AccessTokenInfo>();
+        CompletableFuture<AccessTokenInfo> inFlight = mInFlight.putIfAbsent(key, future);
+
+        // If another caller has already started a task for the key.
+        if (inFlight != null)
+        {
+            return inFlight;
+        }
+
+        try
+        {
+            task.get().whenComplete((result, error) -> {
+                if (error == null)
+                {
+                    future.complete(result);
+                }
+                else
+                {
+                    future.completeExceptionally(unwrap(error));
+                }
+
+                mInFlight.remove(key, future);
+            });
+        }
+        catch (RuntimeException | Error e)
+        {
+            // The task failed to start.
+            future.completeExceptionally(e);
+            mInFlight.remove(key, future);
+        }
+
+        return future;
+    }
+
+
+    private static Throwable unwrap(Throwable error)
+    {
+        // A dependent stage reports the original error wrapped.
+        if (error instanceof CompletionException && error.getCause() != null)
+        {
+            return error.getCause();
+        }
+
+        return error;
+    }
+
+
+    private static <V> V await(CompletableFuture<V> future)
+    {
+        try
+        {
+            return future.join();
+        }
+        catch (CompletionException e)
+        {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+
+            throw e;
+        }
+    }
+}
@@ -20,13 +20,70 @@ package com.authlete.spring.server.api;
 import com.authlete.jakarta.AccessTokenInfo;
 import com.authlete.jakarta.BaseResourceEndpoint;
 import jakarta.ws.rs.WebApplicationException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import com.authlete.common.api.AuthleteApi;
-import com.authlete.common.api.AuthleteApiFactory;
+import com.authlete.spring.server.api.ResourceServerMetrics.ValidationOutcome;
 
 
 public class SpringResourceEndpoint extends BaseResourceEndpoint
 {
+    /**
+     * The instance of the {@link AuthleteApi} interface.
+     */
+    @Autowired
+    private AuthleteApi mAuthleteApi;
+
+
+    /**
+     * Syntax checker of access tokens.
+     */
+    @Autowired
+    private AccessTokenPrevalidator mAccessTokenPrevalidator;
+
+
+    /**
+     * Cache of results of access token introspection.
+     */
+    @Autowired
+    private AccessTokenCache mAccessTokenCache;
+
+
+    /**
+     * Local validator of JWT access tokens.
+     */
+    @Autowired
+    private JwtAccessTokenValidator mJwtAccessTokenValidator;
+
+
+    /**
+     * Cache of access tokens rejected recently.
+     */
+    @Autowired
+    private RejectedAccessTokenCache mRejectedAccessTokenCache;
+
+
+    /**
+     * Metrics of the resource server.
+     */
+    @Autowired
+    private ResourceServerMetrics mResourceServerMetrics;
+
+
+    /**
+     * Adaptive limit of concurrent calls of the Authlete APIs.
+     */
+    @Autowired
+    private AuthleteConcurrencyLimiter mAuthleteConcurrencyLimiter;
+
+
+    /**
+     * Introspection requests in flight, shared by all the endpoints.
+     */
+    @Autowired
+    private SingleFlight mIntrospections;
+
+
     /**
      * Get an instance of the {@link AuthleteApi} interface.
      *
@@ -40,8 +97,9 @@ public class SpringResourceEndpoint extends BaseResourceEndpoint
      */
     protected AuthleteApi getAuthleteApi()
     {
-        // Get an implementation of AuthleteApi interface.
-        return AuthleteApiFactory.getDefaultApi();
+        // The implementation of AuthleteApi interface configured by
+        // AuthleteApiConfiguration.
+        return mAuthleteApi;
     }
 
 
@@ -62,8 +120,7 @@ public class SpringResourceEndpoint extends BaseResourceEndpoint
      */
     protected AccessTokenInfo validateAccessToken(String accessToken)
     {
-        // Call a method defined in the super class.
-        return validateAccessToken(getAuthleteApi(), accessToken);
+        return validateAccessToken(accessToken, null, null);
     }
 
 
@@ -88,15 +145,34 @@ public class SpringResourceEndpoint extends BaseResourceEndpoint
     protected AccessTokenInfo validateAccessToken(
             String accessToken, String[] requiredScopes)
     {
-        // Call a method defined in the super class.
-        return validateAccessToken(
-                getAuthleteApi(), accessToken, requiredScopes);
+        return validateAccessToken(accessToken, requiredScopes, null);
     }
 
 
     /**
      * Validate an access token.
      *
+     * <p>
+     * Access tokens that are missing or malformed are rejected by
+     * {@link AccessTokenPrevalidator} without introspection. Otherwise,
+     * the access token is introspected without any requirement and
+     * {@code requiredScopes} and {@code requiredSubject} are checked
+     * locally. This allows the result of introspection to be shared.
+     * If {@link AccessTokenCache} is enabled, the result is cached and,
+     * if configured so, refreshed ahead of expiry of the cache entry.
+     * If {@link JwtAccessTokenValidator} is enabled, JWT access tokens
+     * signed by a known key are validated locally without introspection.
+     * Access tokens rejected as invalid recently are rejected again by
+     * {@link RejectedAccessTokenCache} without introspection.
+     * Concurrent validations of the same access token share a single
+     * introspection request to the Authlete server. If {@link
+     * AuthleteConcurrencyLimiter} is enabled and too many introspection
+     * requests are in flight, the request is shed with "503 Service
+     * Unavailable" at once. The time and the outcome of validation are
+     * recorded by {@link ResourceServerMetrics} and, while a JDK Flight
+     * Recorder recording is running, as {@link AccessTokenValidationEvent}.
+     * </p>
+     *
      * @param accessToken
      *         An access token to be validated.
      *
@@ -119,9 +195,163 @@ public class SpringResourceEndpoint extends BaseResourceEndpoint
     protected AccessTokenInfo validateAccessToken(
             String accessToken, String[] requiredScopes, String requiredSubject)
     {
-        // Call a method defined in the super class.
-        return validateAccessToken(
-                getAuthleteApi(), accessToken, requiredScopes, requiredSubject);
+        AccessTokenValidationEvent event = new AccessTokenValidationEvent();
+        event.start();
+
+        long start = System.nanoTime();
+
+        try
+        {
+            AccessTokenInfo info = validate(accessToken, requiredScopes, requiredSubject, event);
+
+            mResourceServerMetrics.recordValidation(start, ValidationOutcome.VALID);
+            event.finish(getClass().getSimpleName(), accessToken, ValidationOutcome.VALID);
+
+            return info;
+        }
+        catch (RuntimeException e)
+        {
+            // Record the outcome, e.g. "expired".
+            ValidationOutcome outcome = ValidationOutcome.of(e);
+
+            mResourceServerMetrics.recordValidation(start, outcome);
+            event.finish(getClass().getSimpleName(), accessToken, outcome);
+
+            throw e;
+        }
+    }
+
+
+    private AccessTokenInfo validate(
+            String accessToken, String[] requiredScopes, String requiredSubject,
+            AccessTokenValidationEvent event)
+    {
+        // If the access token is missing or malformed.
+        RejectedAccessTokenException malformed = mAccessTokenPrevalidator.check(accessToken);
+
+        if (malformed != null)
+        {
+            throw malformed;
+        }
+
+        // Popular entries are refreshed in the background if refresh-ahead
+        // is enabled.
+        AccessTokenInfo info = mAccessTokenCache.get(accessToken, this::validateUncached);
+
+        if (info != null)
+        {
+            event.cacheHit = true;
+        }
+        else
+        {
+            info = validateUncached(accessToken, event);
+        }
+
+        // Check the requirements against the information.
+        AccessTokenRequirements.check(info, requiredScopes, requiredSubject);
+
+        return info;
+    }
+
+
+    /**
+     * Validate the access token that is not in the cache.
+     */
+    private AccessTokenInfo validateUncached(String accessToken)
+    {
+        return validateUncached(accessToken, null);
+    }
+
+
+    /**
+     * Validate the access token that is not in the cache. A hit of
+     * {@link RejectedAccessTokenCache} is marked in {@code event} if
+     * it is given.
+     */
+    private AccessTokenInfo validateUncached(String accessToken, AccessTokenValidationEvent event)
+    {
+        // If the access token has been rejected recently.
+        RejectedAccessTokenException rejected = mRejectedAccessTokenCache.get(accessToken);
+
+        if (rejected != null)
+        {
+            if (event != null)
+            {
+                event.cacheHit = true;
+            }
+
+            // Reject it again with the pre-built response.
+            throw rejected;
+        }
+
+        try
+        {
+            return validateLocallyOrIntrospect(accessToken);
+        }
+        catch (WebApplicationException e)
+        {
+            // Remember the rejection if it is cacheable.
+            throw mRejectedAccessTokenCache.reject(accessToken, e);
+        }
+    }
+
+
+    /**
+     * Validate the access token locally if it is a JWT that can be
+     * validated locally. Otherwise, introspect it.
+     */
+    private AccessTokenInfo validateLocallyOrIntrospect(String accessToken)
+    {
+        AccessTokenInfo info = mJwtAccessTokenValidator.validate(accessToken);
+
+        // If the access token cannot be validated locally.
+        if (info == null)
+        {
+            return introspect(accessToken);
+        }
+
+        mAccessTokenCache.put(accessToken, info);
+
+        return info;
+    }
+
+
+    /**
+     * Introspect the access token without any requirement. If another
+     * thread is introspecting the same access token, wait for it and
+     * share its result.
+     */
+    private AccessTokenInfo introspect(String accessToken)
+    {
+        return mIntrospections.execute(accessToken, () -> {
+            // Shed the request at once if the limit has been reached.
+            long start = mAuthleteConcurrencyLimiter.acquire();
+            boolean dropped = true;
+            AccessTokenInfo info;
+
+            try
+            {
+                // Call a method defined in the super class.
+                info = validateAccessToken(getAuthleteApi(), accessToken);
+                dropped = false;
+            }
+            catch (RuntimeException e)
+            {
+                // Rejection of the access token is not a failure.
+                dropped = AuthleteConcurrencyLimiter.isDropped(e);
+                throw e;
+            }
+            finally
+            {
+                mAuthleteConcurrencyLimiter.release(start, dropped);
+            }
+
+            // Cache the result before the other threads are released so
+            // that threads arriving later hit the cache.
+            mAccessTokenCache.put(accessToken, info);
+
+            return info;
+        });
     }
 
 
@@ -131,6 +361,17 @@ public class SpringResourceEndpoint extends BaseResourceEndpoint
      */
     protected ResponseEntity<?> toResponseEntity(WebApplicationException exception)
     {
+        // If the response has been built in advance.
+        if (exception instanceof RejectedAccessTokenException)
+        {
+            return ((RejectedAccessTokenException)exception).getResponseEntity();
+        }
+
+        if (exception instanceof OverloadedException)
+        {
+            return ((OverloadedException)exception).getResponseEntity();
+        }
+
         return new ResponseEntityBuilder().exception(exception).build();
     }
 
@@ -17,8 +17,13 @@
 package com.authlete.spring.server.api;
 
 
+import com.authlete.jakarta.AccessTokenInfo;
+import com.authlete.jakarta.AccessTokenValidator;
 import com.authlete.jakarta.BaseUserInfoEndpoint;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -27,7 +32,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import com.authlete.common.api.AuthleteApiFactory;
+import com.authlete.common.api.AuthleteApi;
+import com.authlete.spring.server.api.ResourceServerMetrics.ValidationOutcome;
 
 
 /**
@@ -50,13 +56,92 @@ import com.authlete.common.api.AuthleteApiFactory;
  * See the specifications for details.
  * </p>
  *
+ * <p>
+ * When {@code userinfo.cache.enabled} is {@code true}, successful
+ * responses are cached per access token by {@link UserInfoResponseCache}.
+ * </p>
+ *
+ * <p>
+ * While a JDK Flight Recorder recording is running, each request is
+ * recorded as {@link UserInfoEvent}.
+ * </p>
+ *
+ * <p>
+ * When {@code authlete.limiter.enabled} is {@code true}, requests that
+ * would call the Authlete APIs while too many calls are in flight are
+ * shed with "503 Service Unavailable" by {@link AuthleteConcurrencyLimiter}.
+ * </p>
+ *
  * @see <a href="http://openid.net/specs/openid-connect-core-1_0.html#UserInfo"
  *      >OpenID Connect Core 10, 5.3. UserInfo Endpoint</a>
  */
 @RestController
 @RequestMapping("/api/userinfo")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UserInfoEndpoint extends BaseUserInfoEndpoint
 {
+    /**
+     * The name of this endpoint in metrics and events.
+     */
+    private static final String ENDPOINT_NAME = "userinfo";
+
+
+    /**
+     * The instance of the {@link AuthleteApi} interface.
+     */
+    @Autowired
+    private AuthleteApi mAuthleteApi;
+
+
+    /**
+     * Syntax checker of access tokens.
+     */
+    @Autowired
+    private AccessTokenPrevalidator mAccessTokenPrevalidator;
+
+
+    /**
+     * Cache of results of access token introspection.
+     */
+    @Autowired
+    private AccessTokenCache mAccessTokenCache;
+
+
+    /**
+     * Local validator of JWT access tokens.
+     */
+    @Autowired
+    private JwtAccessTokenValidator mJwtAccessTokenValidator;
+
+
+    /**
+     * Cache of successful responses.
+     */
+    @Autowired
+    private UserInfoResponseCache mUserInfoResponseCache;
+
+
+    /**
+     * Metrics of the resource server.
+     */
+    @Autowired
+    private ResourceServerMetrics mResourceServerMetrics;
+
+
+    /**
+     * Adaptive limit of concurrent calls of the Authlete APIs.
+     */
+    @Autowired
+    private AuthleteConcurrencyLimiter mAuthleteConcurrencyLimiter;
+
+
+    /**
+     * The stateless implementation of {@code UserInfoRequestHandlerSpi}.
+     */
+    @Autowired
+    private UserInfoRequestHandlerSpiImpl mUserInfoRequestHandlerSpi;
+
+
     /**
      * The userinfo endpoint for {@code GET} method.
      *
@@ -108,10 +193,151 @@ public class UserInfoEndpoint extends BaseUserInfoEndpoint
      */
     private ResponseEntity<?> handle(String accessToken)
     {
-        // Handle the userinfo request.
-        Response response = handle(AuthleteApiFactory.getDefaultApi(),
-                new UserInfoRequestHandlerSpiImpl(), accessToken);
+        // Recorded only while a JDK Flight Recorder recording is running.
+        UserInfoEvent event = new UserInfoEvent();
+        event.start();
+
+        // If the access token is missing or malformed, reject the request
+        // without asking the Authlete server.
+        RejectedAccessTokenException malformed = mAccessTokenPrevalidator.check(accessToken);
+
+        if (malformed != null)
+        {
+            event.finish(ENDPOINT_NAME, accessToken, ValidationOutcome.of(malformed));
+
+            return malformed.getResponseEntity();
+        }
+
+        // If a response for the access token has been cached.
+        ResponseEntity<?> cached = mUserInfoResponseCache.get(accessToken);
+
+        if (cached != null)
+        {
+            event.cacheHit = true;
+            event.finish(ENDPOINT_NAME, accessToken, ValidationOutcome.VALID);
+
+            return cached;
+        }
+
+        long limiterStart;
+
+        try
+        {
+            // Shed the request at once if the limit has been reached.
+            limiterStart = mAuthleteConcurrencyLimiter.acquire();
+        }
+        catch (OverloadedException e)
+        {
+            event.finish(ENDPOINT_NAME, accessToken, ValidationOutcome.of(e));
+
+            return e.getResponseEntity();
+        }
+
+        // Taken before the user is looked up. See UserInfoResponseCache.
+        long generation = mUserInfoResponseCache.generation();
+        UserInfoRequestContext context = mUserInfoRequestHandlerSpi.newContext();
+        Response response = null;
+
+        try
+        {
+            // Handle the userinfo request. The context holds the user of
+            // this request only.
+            response = handle(mAuthleteApi, context, accessToken);
+        }
+        finally
+        {
+            mAuthleteConcurrencyLimiter.release(limiterStart,
+                    response == null || AuthleteConcurrencyLimiter.isDropped(response.getStatus()));
+        }
+
+        // A response that will be cached is served repeatedly.
+        boolean cacheable = mUserInfoResponseCache.isEnabled() && response.getStatus() == 200;
+
+        long start = System.nanoTime();
+        ResponseEntityBuilder builder = new ResponseEntityBuilder().response(response);
+        ResponseEntity<?> entity = cacheable ? builder.buildShared() : builder.build();
+        mResourceServerMetrics.recordResponseBuild(ENDPOINT_NAME, start);
+
+        if (cacheable)
+        {
+            cache(accessToken, context.getSubject(), entity, generation);
+        }
+
+        event.finish(ENDPOINT_NAME, accessToken, ValidationOutcome.of(response));
+
+        return entity;
+    }
+
+
+    /**
+     * Cache a successful response. The expiration time of the access token
+     * is taken from {@link AccessTokenCache} or from the JWT access token
+     * without calling the Authlete APIs. Otherwise, the response is cached
+     * for a short time, or the access token is introspected if {@code
+     * userinfo.cache.introspect} is {@code true}. See {@link
+     * UserInfoResponseCache} for the trade-off.
+     */
+    private void cache(
+            String accessToken, String subject, ResponseEntity<?> entity, long generation)
+    {
+        AccessTokenInfo info = mAccessTokenCache.peek(accessToken);
+
+        if (info == null)
+        {
+            try
+            {
+                info = mJwtAccessTokenValidator.validate(accessToken);
+            }
+            catch (WebApplicationException e)
+            {
+                // The access token has become invalid in the meantime.
+                return;
+            }
+        }
+
+        if (info == null && !mUserInfoResponseCache.isIntrospectionEnabled())
+        {
+            // The expiration time of the access token is unknown.
+            mUserInfoResponseCache.put(accessToken, subject, entity, generation);
+            return;
+        }
+
+        if (info == null)
+        {
+            long start;
+
+            try
+            {
+                start = mAuthleteConcurrencyLimiter.acquire();
+            }
+            catch (OverloadedException e)
+            {
+                // Caching is not worth a call of the Authlete API now.
+                return;
+            }
+
+            boolean dropped = true;
+
+            try
+            {
+                info = new AccessTokenValidator(mAuthleteApi).validate(accessToken);
+                dropped = false;
+            }
+            catch (WebApplicationException e)
+            {
+                dropped = AuthleteConcurrencyLimiter.isDropped(e);
+
+                // The access token has become invalid in the meantime.
+                return;
+            }
+            finally
+            {
+                mAuthleteConcurrencyLimiter.release(start, dropped);
+            }
+
+            mAccessTokenCache.put(accessToken, info);
+        }
 
-        return new ResponseEntityBuilder().response(response).build();
+        mUserInfoResponseCache.put(accessToken, info, entity, generation);
     }
 }
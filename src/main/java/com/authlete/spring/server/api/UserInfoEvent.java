@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * A JDK Flight Recorder event of a request handled by {@link
+ * UserInfoEndpoint}. A cache hit means that the response was served by
+ * {@link UserInfoResponseCache}.
+ */
+@Name("com.authlete.spring.server.UserInfo")
+@Label("UserInfo Request")
+@Category({ "Authlete", "Resource Server" })
+@Description("A request to the userinfo endpoint")
+@StackTrace(false)
+final class UserInfoEvent extends RequestEvent
+{
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import com.authlete.common.types.User;
+import com.authlete.jakarta.spi.UserInfoRequestHandlerSpiAdapter;
+
+
+/**
+ * The context of one userinfo request, given to {@code
+ * UserInfoRequestHandler} as its {@link
+ * com.authlete.jakarta.spi.UserInfoRequestHandlerSpi
+ * UserInfoRequestHandlerSpi}.
+ *
+ * <p>
+ * The context holds only the user looked up by {@link
+ * #prepareUserClaims(String, String[])} and delegates the work to the
+ * shared, stateless {@link UserInfoRequestHandlerSpiImpl}. Create one by
+ * {@link UserInfoRequestHandlerSpiImpl#newContext()} per request and do
+ * not share it.
+ * </p>
+ */
+public final class UserInfoRequestContext extends UserInfoRequestHandlerSpiAdapter
+{
+    private final UserInfoRequestHandlerSpiImpl mHandler;
+    private String mSubject;
+    private User mUser;
+
+
+    UserInfoRequestContext(UserInfoRequestHandlerSpiImpl handler)
+    {
+        mHandler = handler;
+    }
+
+
+    @Override
+    public void prepareUserClaims(String subject, String[] claimNames)
+    {
+        mSubject = subject;
+        mUser    = mHandler.lookUpUser(subject, claimNames);
+    }
+
+
+    /**
+     * Get the subject of the user given to {@link
+     * #prepareUserClaims(String, String[])}, or {@code null} if it has
+     * not been called.
+     */
+    String getSubject()
+    {
+        return mSubject;
+    }
+
+
+    @Override
+    public Object getUserClaim(String claimName, String languageTag)
+    {
+        return mHandler.getUserClaim(mUser, claimName, languageTag);
+    }
+}
@@ -17,41 +17,163 @@
 package com.authlete.spring.server.api;
 
 
+import org.springframework.stereotype.Component;
 import com.authlete.common.types.User;
-import com.authlete.jakarta.spi.UserInfoRequestHandlerSpiAdapter;
+import com.authlete.common.util.Utils;
+import com.authlete.spring.server.db.IndexedUser;
+import com.authlete.spring.server.db.UserClaim;
 import com.authlete.spring.server.db.UserDao;
 
 
 /**
- * Implementation of {@link com.authlete.jakarta.spi.UserInfoRequestHandlerSpiAdapter
- * UserInfoRequestHandlerSpi} interface which needs to be given to the
- * constructor of {@link com.authlete.jakarta.spi.UserInfoRequestHandlerSpiAdapter
- * UserInfoRequestHandler}.
+ * The stateless part of the implementation of {@link
+ * com.authlete.jakarta.spi.UserInfoRequestHandlerSpi
+ * UserInfoRequestHandlerSpi}, shared by all requests.
+ *
+ * <p>
+ * {@code UserInfoRequestHandler} calls {@code prepareUserClaims()} and
+ * then {@code getUserClaim()} on the same SPI instance, so the user looked
+ * up by the former has to be kept somewhere until the latter. This class
+ * keeps nothing: the user is held by a {@link UserInfoRequestContext}
+ * created by {@link #newContext()} for each request, which is the SPI
+ * instance given to {@code UserInfoRequestHandler} and delegates
+ * everything else to this class. The reactive userinfo endpoint does not
+ * need a context at all; it passes the user returned from {@link
+ * #lookUpUser(String, String[])} explicitly.
+ * </p>
+ *
+ * <p>
+ * Claim names are resolved to {@link UserClaim} constants and values are
+ * fetched by index, so collecting claims does not allocate.
+ * </p>
  */
-public class UserInfoRequestHandlerSpiImpl extends UserInfoRequestHandlerSpiAdapter
+@Component
+public class UserInfoRequestHandlerSpiImpl
 {
-    private User mUser;
+    private final ResourceServerMetrics mResourceServerMetrics;
+
+
+    public UserInfoRequestHandlerSpiImpl(ResourceServerMetrics metrics)
+    {
+        mResourceServerMetrics = metrics;
+    }
 
 
-    @Override
-    public void prepareUserClaims(String subject, String[] claimNames)
+    /**
+     * Create the context of a request, which is the {@code
+     * UserInfoRequestHandlerSpi} instance given to {@code
+     * UserInfoRequestHandler}.
+     */
+    public UserInfoRequestContext newContext()
     {
-        // Look up a user who has the subject.
-        mUser = UserDao.getBySubject(subject);
+        return new UserInfoRequestContext(this);
     }
 
 
-    @Override
-    public Object getUserClaim(String claimName, String languageTag)
+    /**
+     * Look up a user who has the subject. Only the requested claims need
+     * to be loaded.
+     *
+     * @return
+     *         The user, or {@code null} if not found.
+     */
+    public User lookUpUser(String subject, String[] claimNames)
     {
-        // If looking up a user has failed in prepareUserClaims().
-        if (mUser == null)
+        long start = System.nanoTime();
+
+        User user = UserDao.getBySubject(subject, claimNames);
+
+        mResourceServerMetrics.recordUserLookup(start, user != null);
+
+        return user;
+    }
+
+
+    /**
+     * Get the value of a claim of the user.
+     *
+     * @param user
+     *         The user. May be {@code null}.
+     */
+    public Object getUserClaim(User user, String claimName, String languageTag)
+    {
+        // If looking up a user has failed.
+        if (user == null)
         {
             // No claim is available.
             return null;
         }
 
+        // Resolve the claim name and fetch the value by the ordinal.
+        if (user instanceof IndexedUser)
+        {
+            return getUserClaim(user, UserClaim.of(claimName), languageTag);
+        }
+
         // Get the value of the claim.
-        return mUser.getClaim(claimName, languageTag);
+        return user.getClaim(claimName, languageTag);
+    }
+
+
+    /**
+     * Get the value of a claim which has been resolved in advance.
+     *
+     * @param user
+     *         The user. May be {@code null}.
+     *
+     * @param claim
+     *         A claim. May be {@code null}.
+     *
+     * @param languageTag
+     *         A language tag. May be {@code null}.
+     */
+    public Object getUserClaim(User user, UserClaim claim, String languageTag)
+    {
+        // If looking up a user has failed or the claim is not supported.
+        if (user == null || claim == null)
+        {
+            // No claim is available.
+            return null;
+        }
+
+        if (user instanceof IndexedUser)
+        {
+            return ((IndexedUser)user).getClaim(claim, languageTag);
+        }
+
+        return user.getClaim(claim.getName(), languageTag);
+    }
+
+
+    /**
+     * Get the value of a claim which has been resolved in advance as a JSON
+     * fragment. See {@link IndexedUser#getClaimFragment(UserClaim, String)}.
+     *
+     * @param user
+     *         The user. May be {@code null}.
+     *
+     * @param claim
+     *         A claim. May be {@code null}.
+     *
+     * @param languageTag
+     *         A language tag. May be {@code null}.
+     */
+    public String getUserClaimFragment(User user, UserClaim claim, String languageTag)
+    {
+        // If looking up a user has failed or the claim is not supported.
+        if (user == null || claim == null)
+        {
+            // No claim is available.
+            return null;
+        }
+
+        if (user instanceof IndexedUser)
+        {
+            return ((IndexedUser)user).getClaimFragment(claim, languageTag);
+        }
+
+        Object value = user.getClaim(claim.getName(), languageTag);
+
+        return (value == null) ? null : Utils.toJson(value);
     }
 }
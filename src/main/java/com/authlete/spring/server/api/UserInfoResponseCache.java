@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import com.authlete.jakarta.AccessTokenInfo;
+import com.authlete.spring.server.db.UserChangeListener;
+import com.authlete.spring.server.db.UserDao;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+
+/**
+ * An optional cache of successful responses from the userinfo endpoint.
+ *
+ * <p>
+ * Building a userinfo response takes two calls of the Authlete APIs
+ * ({@code /auth/userinfo} and {@code /auth/userinfo/issue}) and a lookup
+ * of the user. When {@code userinfo.cache.enabled} is {@code true}, the
+ * final response (JSON or JWT) is cached, so repeated userinfo requests
+ * with the same access token are served by a lookup of this cache.
+ * </p>
+ *
+ * <p>
+ * Entries are keyed by the hash value of access tokens. An entry lives at
+ * most for {@code userinfo.cache.max-ttl}, but never longer than the access
+ * token itself. Entries of a user are removed when {@link UserDao} reports
+ * that the record of the user has changed. Note that a revoked access token
+ * may be accepted and that a signed (JWT) response is replayed as is until
+ * the entry expires. Choose {@code userinfo.cache.max-ttl} accordingly.
+ * </p>
+ *
+ * <p>
+ * The subject of the user and the expiration time of the access token are
+ * taken from the result of introspection cached by {@link AccessTokenCache}
+ * or from the local validation of a JWT access token by {@link
+ * JwtAccessTokenValidator}, which cost no call of the Authlete APIs. If
+ * neither is available, the expiration time is unknown and the response is
+ * cached for at most {@code userinfo.cache.unknown-expiry-ttl}, which
+ * should be short. Setting {@code userinfo.cache.introspect} to {@code
+ * true} makes the endpoints introspect the access token instead to learn
+ * the expiration time. That is a third call of the Authlete APIs on every
+ * cache miss, in addition to the two calls of the userinfo flow, so it
+ * pays off only if the same access token is used for many userinfo
+ * requests.
+ * </p>
+ *
+ * <p>
+ * A response built from a user record that changes while the request is
+ * being handled must not be cached. Get {@link #generation()} before the
+ * user is looked up and pass it to {@link #put(String, AccessTokenInfo,
+ * ResponseEntity, long) put()}, which drops the response if any user has
+ * changed in the meantime.
+ * </p>
+ */
+@Component
+public class UserInfoResponseCache implements UserChangeListener
+{
+    private final boolean mEnabled;
+    private final boolean mIntrospect;
+    private final long mMaxTtlNanos;
+    private final long mUnknownExpiryTtlNanos;
+    private final Cache<String, Entry> mCache;
+
+
+    /**
+     * Incremented whenever a user record changes.
+     */
+    private final AtomicLong mGeneration = new AtomicLong();
+
+
+    public UserInfoResponseCache(
+            @Value("${userinfo.cache.enabled:false}") boolean enabled,
+            @Value("${userinfo.cache.max-size:10000}") long maxSize,
+            @Value("${userinfo.cache.max-ttl:60s}") Duration maxTtl,
+            @Value("${userinfo.cache.unknown-expiry-ttl:10s}") Duration unknownExpiryTtl,
+            @Value("${userinfo.cache.introspect:false}") boolean introspect)
+    {
+        mEnabled               = enabled;
+        mIntrospect            = introspect;
+        mMaxTtlNanos           = maxTtl.toNanos();
+        mUnknownExpiryTtlNanos = Math.min(mMaxTtlNanos, unknownExpiryTtl.toNanos());
+        mCache                 = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new DeadlineExpiry<String, Entry>(entry -> entry.mDeadline))
+                .build();
+
+        if (mEnabled)
+        {
+            UserDao.addChangeListener(this);
+        }
+    }
+
+
+    @PreDestroy
+    public void shutdown()
+    {
+        UserDao.removeChangeListener(this);
+    }
+
+
+    /**
+     * Check whether this cache is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return mEnabled;
+    }
+
+
+    /**
+     * Check whether the access token should be introspected to cache a
+     * response when its expiration time is not known locally.
+     */
+    public boolean isIntrospectionEnabled()
+    {
+        return mIntrospect;
+    }
+
+
+    /**
+     * Get the cached response for the access token.
+     *
+     * @return
+     *         The cached response, or {@code null} if not cached.
+     */
+    public ResponseEntity<?> get(String accessToken)
+    {
+        if (!mEnabled || accessToken == null)
+        {
+            return null;
+        }
+
+        Entry entry = mCache.getIfPresent(TokenHash.of(accessToken));
+
+        return (entry == null) ? null : entry.mResponse;
+    }
+
+
+    /**
+     * Get the current generation of user records. The generation changes
+     * whenever {@link UserDao} reports a change of a user record.
+     */
+    public long generation()
+    {
+        return mGeneration.get();
+    }
+
+
+    /**
+     * Cache a successful response for the access token.
+     *
+     * @param accessToken
+     *         The access token presented in the userinfo request.
+     *
+     * @param info
+     *         Information about the access token. It gives the subject
+     *         of the user and the expiration time of the access token.
+     *
+     * @param response
+     *         The successful response.
+     *
+     * @param generation
+     *         The value of {@link #generation()} before the user was
+     *         looked up to build the response. If a user record has
+     *         changed since then, the response is not cached.
+     */
+    public void put(
+            String accessToken, AccessTokenInfo info, ResponseEntity<?> response, long generation)
+    {
+        if (info == null)
+        {
+            return;
+        }
+
+        // Bounded by both the configured maximum TTL and the remaining
+        // lifetime of the access token.
+        long lifetime = Math.min(mMaxTtlNanos, DeadlineExpiry.remainingLifetime(info));
+
+        put(accessToken, info.getSubject(), response, lifetime, generation);
+    }
+
+
+    /**
+     * Cache a successful response for the access token whose expiration
+     * time is unknown. The response is cached for at most {@code
+     * userinfo.cache.unknown-expiry-ttl}.
+     *
+     * @param accessToken
+     *         The access token presented in the userinfo request.
+     *
+     * @param subject
+     *         The subject of the user.
+     *
+     * @param response
+     *         The successful response.
+     *
+     * @param generation
+     *         See {@link #put(String, AccessTokenInfo, ResponseEntity, long)}.
+     */
+    public void put(
+            String accessToken, String subject, ResponseEntity<?> response, long generation)
+    {
+        put(accessToken, subject, response, mUnknownExpiryTtlNanos, generation);
+    }
+
+
+    private void put(
+            String accessToken, String subject, ResponseEntity<?> response,
+            long lifetime, long generation)
+    {
+        if (!mEnabled || accessToken == null || subject == null || response == null)
+        {
+            return;
+        }
+
+        // Don't bother caching a response for an access token that is
+        // about to expire.
+        if (lifetime <= 0)
+        {
+            return;
+        }
+
+        Entry entry = new Entry(subject, response, lifetime);
+
+        // If a user record has changed since the user was looked up.
+        if (mGeneration.get() != generation)
+        {
+            return;
+        }
+
+        String key = TokenHash.of(accessToken);
+        mCache.put(key, entry);
+
+        // If a user record has changed while the entry was being put, the
+        // scan in onUserChanged() may have missed the entry.
+        if (mGeneration.get() != generation)
+        {
+            mCache.asMap().remove(key, entry);
+        }
+    }
+
+
+    @Override
+    public void onUserChanged(String subject)
+    {
+        // Before removing entries, so that put() of a response built from
+        // the old record either sees the new generation or is removed here.
+        mGeneration.incrementAndGet();
+
+        if (subject == null)
+        {
+            mCache.invalidateAll();
+            return;
+        }
+
+        // Changes of user records are rare, so scanning the entries is
+        // cheaper than maintaining an index by subject.
+        mCache.asMap().values().removeIf(entry -> subject.equals(entry.mSubject));
+    }
+
+
+    /**
+     * An entry of this cache.
+     */
+    private static final class Entry
+    {
+        private final String mSubject;
+        private final ResponseEntity<?> mResponse;
+        private final long mDeadline;
+
+
+        /**
+         * Fix the deadline of the entry, which is the given lifetime from
+         * now.
+         */
+        Entry(String subject, ResponseEntity<?> response, long lifetimeNanos)
+        {
+            mSubject  = subject;
+            mResponse = response;
+            mDeadline = System.nanoTime() + lifetimeNanos;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.authlete.common.types.User;
+
+
+/**
+ * A {@link UserStore} loaded from a file and reloaded when the file is
+ * modified.
+ *
+ * <p>
+ * The users are held by a snapshot, which is either a {@link HeapUserStore}
+ * loaded from a CSV file ({@link UserCsvReader#read(Path)}) or a {@link
+ * MappedUserStore} ({@link MappedUserStore#open(Path)}). The modification
+ * time of the file is checked periodically, and when it has changed, a new
+ * snapshot is loaded in the background and then replaces the current one
+ * atomically. Readers are never blocked: lookups in progress finish with
+ * the old snapshot and later lookups use the new one. If the file cannot
+ * be loaded, the current snapshot is kept.
+ * </p>
+ *
+ * @see UserCsvReader
+ * @see MappedUserStore
+ */
+public class FileUserStore implements UserStore
+{
+    private static final Logger sLogger = LoggerFactory.getLogger(FileUserStore.class);
+
+
+    private final Path mFile;
+    private final Loader mLoader;
+    private final ScheduledExecutorService mScheduler;
+    private volatile Snapshot mSnapshot;
+
+
+    /**
+     * Load users from the file.
+     *
+     * @param file
+     *         A file of users.
+     *
+     * @param reloadInterval
+     *         Interval to check the modification time of the file.
+     *         Zero or negative disables reloading.
+     *
+     * @param loader
+     *         A function that loads users from the file, e.g.
+     *         {@code UserCsvReader::read}.
+     *
+     * @throws UncheckedIOException
+     *         Failed to load the file.
+     */
+    public FileUserStore(Path file, Duration reloadInterval, Loader loader)
+    {
+        mFile   = file;
+        mLoader = loader;
+
+        try
+        {
+            mSnapshot = load();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to load users from " + file, e);
+        }
+
+        sLogger.info("Loaded {} users from {}", mSnapshot.mStore.size(), file);
+
+        if (reloadInterval.isZero() || reloadInterval.isNegative())
+        {
+            mScheduler = null;
+            return;
+        }
+
+        mScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-store-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        mScheduler.scheduleWithFixedDelay(this::reloadIfModified,
+                reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Stop checking the file.
+     */
+    public void shutdown()
+    {
+        if (mScheduler != null)
+        {
+            mScheduler.shutdownNow();
+        }
+    }
+
+
+    @Override
+    public User getBySubject(String subject)
+    {
+        return mSnapshot.mStore.getBySubject(subject);
+    }
+
+
+    @Override
+    public int size()
+    {
+        return mSnapshot.mStore.size();
+    }
+
+
+    /**
+     * Load the file again regardless of its modification time.
+     *
+     * @throws IOException
+     *         Failed to load the file. The current users are kept.
+     */
+    public void reload() throws IOException
+    {
+        mSnapshot = load();
+
+        // Any user record may have changed.
+        UserDao.notifyUserChanged(null);
+    }
+
+
+    private void reloadIfModified()
+    {
+        try
+        {
+            if (Files.getLastModifiedTime(mFile).equals(mSnapshot.mLastModified))
+            {
+                return;
+            }
+
+            reload();
+
+            sLogger.info("Reloaded {} users from {}", mSnapshot.mStore.size(), mFile);
+        }
+        catch (Exception e)
+        {
+            // Keep using the current users.
+            sLogger.warn("Failed to reload users from {}: {}", mFile, e.getMessage());
+        }
+    }
+
+
+    private Snapshot load() throws IOException
+    {
+        // Get the modification time first so that a modification made
+        // during loading is detected next time.
+        FileTime lastModified = Files.getLastModifiedTime(mFile);
+
+        return new Snapshot(mLoader.load(mFile), lastModified);
+    }
+
+
+    /**
+     * Users loaded from the file and the modification time of the file.
+     */
+    private static final class Snapshot
+    {
+        private final UserStore mStore;
+        private final FileTime mLastModified;
+
+
+        Snapshot(UserStore store, FileTime lastModified)
+        {
+            mStore        = store;
+            mLastModified = lastModified;
+        }
+    }
+
+
+    /**
+     * A function that loads users from a file.
+     */
+    @FunctionalInterface
+    public interface Loader
+    {
+        UserStore load(Path file) throws IOException;
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import com.authlete.common.dto.Address;
+import com.authlete.common.types.User;
+
+
+/**
+ * An immutable, in-memory {@link UserStore} with a compact layout.
+ *
+ * <p>
+ * User records are not kept as objects. All the values of all the users
+ * are encoded in UTF-8 and packed into one byte array, and the position
+ * of each value is kept in an {@code int} array. Subjects are indexed by
+ * an open-addressing hash table of {@code int}s, so a user is found in
+ * O(1) without comparing the subject with other users' one by one. A
+ * store of <i>N</i> users takes about the total size of the values plus
+ * 28 to 36 &times; <i>N</i> bytes, and consists of only three arrays no matter
+ * how large <i>N</i> is, so it puts little load on the garbage collector.
+ * </p>
+ *
+ * <p>
+ * A {@link UserEntity} is created only for the user returned from {@link
+ * #getBySubject(String)}. Instances are built by {@link Builder} and never
+ * modified, so they can be shared by threads without synchronization.
+ * </p>
+ */
+public final class HeapUserStore implements UserStore
+{
+    static final int SUBJECT      = 0;
+    static final int NAME         = 1;
+    static final int EMAIL        = 2;
+    static final int COUNTRY      = 3;
+    static final int PHONE_NUMBER = 4;
+    static final int COLUMNS      = 5;
+
+
+    /**
+     * The number of users, i.e. the number of distinct subjects.
+     */
+    private final int mSize;
+
+
+    /**
+     * UTF-8 values of all the users. Values of the user at row {@code r}
+     * are stored in column order.
+     */
+    private final byte[] mData;
+
+
+    /**
+     * Offsets of the values in {@link #mData}. The value at row {@code r}
+     * and column {@code c} spans from {@code mOffsets[r * COLUMNS + c]}
+     * to {@code mOffsets[r * COLUMNS + c + 1]}. An empty value means null.
+     */
+    private final int[] mOffsets;
+
+
+    /**
+     * Open-addressing hash table of subjects with linear probing. An
+     * element holds (row + 1), and 0 means an empty slot.
+     */
+    private final int[] mIndex;
+
+
+    private HeapUserStore(int size, byte[] data, int[] offsets, int[] index)
+    {
+        mSize    = size;
+        mData    = data;
+        mOffsets = offsets;
+        mIndex   = index;
+    }
+
+
+    @Override
+    public User getBySubject(String subject)
+    {
+        if (subject == null)
+        {
+            return null;
+        }
+
+        int row = find(subject, subject.hashCode());
+
+        if (row < 0)
+        {
+            return null;
+        }
+
+        String country = getValue(row, COUNTRY);
+
+        return new UserEntity(
+                getValue(row, SUBJECT),
+                getValue(row, NAME),
+                getValue(row, EMAIL),
+                (country == null) ? null : new Address().setCountry(country),
+                getValue(row, PHONE_NUMBER));
+    }
+
+
+    @Override
+    public int size()
+    {
+        return mSize;
+    }
+
+
+    private int find(String subject, int hash)
+    {
+        int mask = mIndex.length - 1;
+
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask)
+        {
+            int entry = mIndex[slot];
+
+            if (entry == 0)
+            {
+                return -1;
+            }
+
+            if (subjectEquals(entry - 1, subject))
+            {
+                return entry - 1;
+            }
+        }
+    }
+
+
+    private String getValue(int row, int column)
+    {
+        int i     = row * COLUMNS + column;
+        int start = mOffsets[i];
+        int end   = mOffsets[i + 1];
+
+        if (start == end)
+        {
+            return null;
+        }
+
+        return new String(mData, start, end - start, StandardCharsets.UTF_8);
+    }
+
+
+    private boolean subjectEquals(int row, String subject)
+    {
+        int i = row * COLUMNS + SUBJECT;
+
+        return equalsUtf8(mData, mOffsets[i], mOffsets[i + 1] - mOffsets[i], subject);
+    }
+
+
+    /**
+     * Compare UTF-8 bytes with a string without decoding the bytes
+     * unless they contain non-ASCII characters.
+     */
+    static boolean equalsUtf8(byte[] data, int offset, int length, String string)
+    {
+        int n = string.length();
+
+        // A character takes at least one byte in UTF-8.
+        if (length < n)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < n; ++i)
+        {
+            char c = string.charAt(i);
+            byte b = data[offset + i];
+
+            // If either is not ASCII.
+            if (0x80 <= c || b < 0)
+            {
+                return new String(data, offset, length, StandardCharsets.UTF_8).equals(string);
+            }
+
+            if (c != b)
+            {
+                return false;
+            }
+        }
+
+        return length == n;
+    }
+
+
+    private static int spread(int hash)
+    {
+        // Mix the higher bits into the lower bits used as an index.
+        return hash ^ (hash >>> 16);
+    }
+
+
+    /**
+     * Builder of {@link HeapUserStore}. Not thread-safe.
+     */
+    public static final class Builder
+    {
+        private int mSize;
+        private byte[] mData = new byte[1024];
+        private int mDataLength;
+        private int[] mOffsets = new int[COLUMNS * 16 + 1];
+        private int[] mHashes = new int[16];
+
+
+        /**
+         * Add a user. When users with the same subject are added, the
+         * last one wins.
+         *
+         * @param subject
+         *         The subject of the user. Must not be {@code null} or empty.
+         *
+         * @param name
+         *         The name of the user. May be {@code null}.
+         *
+         * @param email
+         *         The email address of the user. May be {@code null}.
+         *
+         * @param country
+         *         The country of the postal address of the user. May be
+         *         {@code null}.
+         *
+         * @param phoneNumber
+         *         The phone number of the user. May be {@code null}.
+         */
+        public Builder add(
+                String subject, String name, String email, String country, String phoneNumber)
+        {
+            if (subject == null || subject.isEmpty())
+            {
+                throw new IllegalArgumentException("The subject is missing.");
+            }
+
+            if (mHashes.length == mSize)
+            {
+                mHashes  = Arrays.copyOf(mHashes, grow(mSize));
+                mOffsets = Arrays.copyOf(mOffsets, mHashes.length * COLUMNS + 1);
+            }
+
+            int base = mSize * COLUMNS;
+
+            append(base + SUBJECT,      subject);
+            append(base + NAME,         name);
+            append(base + EMAIL,        email);
+            append(base + COUNTRY,      country);
+            append(base + PHONE_NUMBER, phoneNumber);
+
+            mHashes[mSize++] = subject.hashCode();
+
+            return this;
+        }
+
+
+        private void append(int i, String value)
+        {
+            // mOffsets[i] has been set as the end of the previous value.
+            mOffsets[i] = mDataLength;
+
+            if (value != null && !value.isEmpty())
+            {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+                if (mData.length - mDataLength < bytes.length)
+                {
+                    long required = (long)mDataLength + bytes.length;
+
+                    if (Integer.MAX_VALUE - 8 < required)
+                    {
+                        throw new IllegalStateException(
+                                "The user records are too large to be held in a heap user store.");
+                    }
+
+                    mData = Arrays.copyOf(mData,
+                            (int)Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * mData.length)));
+                }
+
+                System.arraycopy(bytes, 0, mData, mDataLength, bytes.length);
+                mDataLength += bytes.length;
+            }
+
+            mOffsets[i + 1] = mDataLength;
+        }
+
+
+        private static int grow(int size)
+        {
+            return size + Math.max(16, size >> 1);
+        }
+
+
+        /**
+         * Build a store of the users added so far.
+         */
+        public HeapUserStore build()
+        {
+            // Keep the load factor of the index at or below 0.5.
+            int capacity  = Integer.highestOneBit(Math.max(2, mSize) * 2 - 1) << 1;
+            int[] index   = new int[capacity];
+            byte[] data   = Arrays.copyOf(mData, mDataLength);
+            int[] offsets = Arrays.copyOf(mOffsets, mSize * COLUMNS + 1);
+            int size      = 0;
+
+            for (int row = 0; row < mSize; ++row)
+            {
+                if (insert(index, data, offsets, row, mHashes[row]))
+                {
+                    ++size;
+                }
+            }
+
+            return new HeapUserStore(size, data, offsets, index);
+        }
+    }
+
+
+    /**
+     * Put a row into the index.
+     *
+     * @return
+     *         {@code true} if the subject of the row is new. {@code false}
+     *         if the row has replaced another row with the same subject.
+     */
+    private static boolean insert(int[] index, byte[] data, int[] offsets, int row, int hash)
+    {
+        int mask = index.length - 1;
+        int i    = row * COLUMNS + SUBJECT;
+
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask)
+        {
+            int entry = index[slot];
+
+            if (entry == 0)
+            {
+                index[slot] = row + 1;
+                return true;
+            }
+
+            int j = (entry - 1) * COLUMNS + SUBJECT;
+
+            // If the slot has the same subject, the later row wins.
+            if (Arrays.equals(data, offsets[i], offsets[i + 1], data, offsets[j], offsets[j + 1]))
+            {
+                index[slot] = row + 1;
+                return false;
+            }
+        }
+    }
+}
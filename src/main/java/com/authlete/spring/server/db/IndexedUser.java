@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import com.authlete.common.types.User;
+import com.authlete.common.util.Utils;
+
+
+/**
+ * A {@link User} whose claims can be fetched by {@link UserClaim}.
+ */
+public interface IndexedUser extends User
+{
+    /**
+     * Get the value of a claim.
+     *
+     * @param claim
+     *         A claim.
+     *
+     * @param languageTag
+     *         A language tag, e.g. {@code "ja"}. May be {@code null}.
+     *
+     * @return
+     *         The value of the claim, or {@code null} if not available.
+     */
+    Object getClaim(UserClaim claim, String languageTag);
+
+
+    /**
+     * Get the value of a claim rendered as a JSON value, e.g. {@code
+     * "\"John Smith\""} for a string or {@code "{\"country\":\"USA\"}"}
+     * for an address. A userinfo response can be built by concatenating
+     * fragments without serializing the values again.
+     *
+     * <p>
+     * This default implementation renders the value every time it is
+     * called. Implementations that hold their values may cache fragments.
+     * </p>
+     *
+     * @param claim
+     *         A claim.
+     *
+     * @param languageTag
+     *         A language tag, e.g. {@code "ja"}. May be {@code null}.
+     *
+     * @return
+     *         The JSON fragment of the claim, or {@code null} if the
+     *         claim is not available.
+     */
+    default String getClaimFragment(UserClaim claim, String languageTag)
+    {
+        Object value = getClaim(claim, languageTag);
+
+        return (value == null) ? null : Utils.toJson(value);
+    }
+
+
+    /**
+     * Get the value of a claim by resolving the claim name to {@link
+     * UserClaim}.
+     */
+    @Override
+    default Object getClaim(String claimName, String languageTag)
+    {
+        UserClaim claim = UserClaim.of(claimName);
+
+        if (claim == null)
+        {
+            // Unsupported claim.
+            return null;
+        }
+
+        return getClaim(claim, languageTag);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import com.authlete.common.dto.Address;
+import com.authlete.common.types.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+
+/**
+ * A {@link UserRepository} backed by a relational database.
+ *
+ * <p>
+ * Users are read from the {@code users} table, whose columns are
+ * {@code subject}, {@code name}, {@code email}, {@code country} and
+ * {@code phone_number}. Only the columns of the claims requested are
+ * selected. Because there are only a few combinations of the columns,
+ * the SQL statement of each combination is built in advance, so the
+ * same statement strings are passed to the JDBC driver repeatedly and
+ * its prepared statement cache (e.g. {@code QUERY_CACHE_SIZE} of H2 or
+ * {@code cachePrepStmts} of MySQL Connector/J) works well. Connections
+ * are pooled by the {@code DataSource} (HikariCP by default).
+ * </p>
+ *
+ * <p>
+ * A bounded read-through cache keyed by subject sits in front of the
+ * database. An entry remembers which columns it has loaded. When a
+ * request needs a column that the entry does not have, the union of the
+ * columns is loaded and the entry is replaced. Users not found are
+ * cached as well. An entry lives at most for {@code user.store.cache.ttl},
+ * so a change in the database is visible after that at the latest, or
+ * immediately after {@link #invalidate(String)}.
+ * </p>
+ */
+public class JdbcUserRepository implements UserRepository
+{
+    private static final int NAME_COLUMN         = 1;
+    private static final int EMAIL_COLUMN        = 1 << 1;
+    private static final int COUNTRY_COLUMN      = 1 << 2;
+    private static final int PHONE_NUMBER_COLUMN = 1 << 3;
+    private static final int ALL_COLUMNS         =
+            NAME_COLUMN | EMAIL_COLUMN | COUNTRY_COLUMN | PHONE_NUMBER_COLUMN;
+
+
+    /**
+     * SQL statements indexed by the bit set of the columns.
+     */
+    private static final String[] SQL = buildSql();
+
+
+    private final JdbcTemplate mJdbcTemplate;
+    private final Cache<String, Entry> mCache;
+
+
+    /**
+     * Constructor.
+     *
+     * @param jdbcTemplate
+     *         A JDBC template with a pooled {@code DataSource}.
+     *
+     * @param cacheMaxSize
+     *         The maximum number of users cached. 0 disables the cache.
+     *
+     * @param cacheTtl
+     *         The maximum duration for which a user is cached.
+     */
+    public JdbcUserRepository(JdbcTemplate jdbcTemplate, long cacheMaxSize, Duration cacheTtl)
+    {
+        mJdbcTemplate = jdbcTemplate;
+        mCache        = (cacheMaxSize <= 0) ? null : Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+
+    private static String[] buildSql()
+    {
+        String[] sql = new String[ALL_COLUMNS + 1];
+
+        for (int columns = 0; columns <= ALL_COLUMNS; ++columns)
+        {
+            StringBuilder sb = new StringBuilder("SELECT subject");
+
+            appendColumn(sb, columns, NAME_COLUMN,         "name");
+            appendColumn(sb, columns, EMAIL_COLUMN,        "email");
+            appendColumn(sb, columns, COUNTRY_COLUMN,      "country");
+            appendColumn(sb, columns, PHONE_NUMBER_COLUMN, "phone_number");
+
+            sql[columns] = sb.append(" FROM users WHERE subject = ?").toString();
+        }
+
+        return sql;
+    }
+
+
+    private static void appendColumn(StringBuilder sb, int columns, int column, String name)
+    {
+        if ((columns & column) != 0)
+        {
+            sb.append(", ").append(name);
+        }
+    }
+
+
+    @Override
+    public User findBySubject(String subject, String[] claimNames)
+    {
+        if (subject == null)
+        {
+            return null;
+        }
+
+        int columns = toColumns(claimNames);
+
+        if (mCache == null)
+        {
+            return load(subject, columns);
+        }
+
+        Entry entry = mCache.getIfPresent(subject);
+
+        // If the cached entry has all the columns needed.
+        if (entry != null && (entry.mColumns & columns) == columns)
+        {
+            return entry.mUser;
+        }
+
+        // Load the columns that the cached entry has, too, so that the
+        // new entry serves the requests that the old one served.
+        if (entry != null)
+        {
+            columns |= entry.mColumns;
+        }
+
+        UserEntity user = load(subject, columns);
+
+        // A user not found has no column to load later.
+        mCache.put(subject, new Entry(user, (user != null) ? columns : ALL_COLUMNS));
+
+        return user;
+    }
+
+
+    /**
+     * Remove the cached user. Call this method when the user has been
+     * modified in the database. Listeners registered to {@link UserDao}
+     * are notified as well.
+     */
+    public void invalidate(String subject)
+    {
+        if (subject == null)
+        {
+            return;
+        }
+
+        if (mCache != null)
+        {
+            mCache.invalidate(subject);
+        }
+
+        UserDao.notifyUserChanged(subject);
+    }
+
+
+    private UserEntity load(String subject, int columns)
+    {
+        ResultSetExtractor<UserEntity> extractor =
+                rs -> rs.next() ? toUser(rs, columns) : null;
+
+        return mJdbcTemplate.query(SQL[columns], extractor, subject);
+    }
+
+
+    private static UserEntity toUser(ResultSet rs, int columns) throws SQLException
+    {
+        String country = getString(rs, columns, COUNTRY_COLUMN, "country");
+
+        return new UserEntity(
+                rs.getString("subject"),
+                getString(rs, columns, NAME_COLUMN, "name"),
+                getString(rs, columns, EMAIL_COLUMN, "email"),
+                (country == null) ? null : new Address().setCountry(country),
+                getString(rs, columns, PHONE_NUMBER_COLUMN, "phone_number"));
+    }
+
+
+    private static String getString(
+            ResultSet rs, int columns, int column, String label) throws SQLException
+    {
+        return ((columns & column) != 0) ? rs.getString(label) : null;
+    }
+
+
+    /**
+     * Convert claim names to the bit set of the columns to load.
+     */
+    private static int toColumns(String[] claimNames)
+    {
+        if (claimNames == null)
+        {
+            return ALL_COLUMNS;
+        }
+
+        int columns = 0;
+
+        for (String claimName : claimNames)
+        {
+            if (claimName == null)
+            {
+                continue;
+            }
+
+            // Remove the language tag, if any.
+            int sharp   = claimName.indexOf('#');
+            String name = (sharp < 0) ? claimName : claimName.substring(0, sharp);
+
+            UserClaim claim = UserClaim.of(name);
+
+            if (claim == null)
+            {
+                // Not stored in the database.
+                continue;
+            }
+
+            switch (claim)
+            {
+                case NAME:
+                    columns |= NAME_COLUMN;
+                    break;
+
+                case EMAIL:
+                    columns |= EMAIL_COLUMN;
+                    break;
+
+                case ADDRESS:
+                    columns |= COUNTRY_COLUMN;
+                    break;
+
+                case PHONE_NUMBER:
+                    columns |= PHONE_NUMBER_COLUMN;
+                    break;
+            }
+        }
+
+        return columns;
+    }
+
+
+    /**
+     * A cached user and the columns loaded.
+     */
+    private static final class Entry
+    {
+        private final UserEntity mUser;
+        private final int mColumns;
+
+
+        Entry(UserEntity user, int columns)
+        {
+            mUser    = user;
+            mColumns = columns;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import com.authlete.common.dto.Address;
+
+
+/**
+ * A user in a {@link MappedUserStore}.
+ *
+ * <p>
+ * This is a lightweight view of a record in the mapped file. A claim is
+ * decoded from the file every time it is requested, so no value is held
+ * by this object. The supported claims are the same as {@link UserEntity}.
+ * </p>
+ */
+public final class MappedUser implements IndexedUser
+{
+    private final MappedUserStore mStore;
+    private final long mRecord;
+
+
+    MappedUser(MappedUserStore store, long record)
+    {
+        mStore  = store;
+        mRecord = record;
+    }
+
+
+    @Override
+    public String getSubject()
+    {
+        return mStore.getValue(mRecord, HeapUserStore.SUBJECT);
+    }
+
+
+    @Override
+    public Object getClaim(UserClaim claim, String languageTag)
+    {
+        if (claim == null)
+        {
+            return null;
+        }
+
+        // See "OpenID Connect Core 1.0, 5. Claims".
+        switch (claim)
+        {
+            case NAME:
+                return mStore.getValue(mRecord, HeapUserStore.NAME);
+
+            case EMAIL:
+                return mStore.getValue(mRecord, HeapUserStore.EMAIL);
+
+            case ADDRESS:
+                String country = mStore.getValue(mRecord, HeapUserStore.COUNTRY);
+                return (country == null) ? null : new Address().setCountry(country);
+
+            case PHONE_NUMBER:
+                return mStore.getValue(mRecord, HeapUserStore.PHONE_NUMBER);
+
+            default:
+                // Unsupported claim.
+                return null;
+        }
+    }
+
+
+    @Override
+    public Object getAttribute(String attributeName)
+    {
+        if (attributeName == null)
+        {
+            return null;
+        }
+
+        switch (attributeName)
+        {
+            case "subject":
+                // The code of the user.
+                return getSubject();
+
+            default:
+                // Unsupported attribute.
+                return null;
+        }
+    }
+}
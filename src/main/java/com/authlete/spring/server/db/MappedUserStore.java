@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import com.authlete.common.types.User;
+
+
+/**
+ * A {@link UserStore} backed by a memory-mapped binary file.
+ *
+ * <p>
+ * The users are not loaded into the Java heap. The file is mapped into
+ * memory and only the bytes of the values requested are read, so the
+ * number of users is limited by the size of the file rather than by the
+ * heap, and the garbage collector never sees the users. The file is built
+ * from a CSV file by {@link MappedUserStoreWriter}.
+ * </p>
+ *
+ * <p>
+ * The format of the file is as follows. All integers are big-endian.
+ * </p>
+ *
+ * <pre>
+ * Header (32 bytes)
+ *   int   magic        "AUS1"
+ *   int   version      1
+ *   long  user count
+ *   long  slot count   (a power of 2)
+ *   long  index offset
+ *
+ * Records (variable length), one per user
+ *   int   hash of the subject (String.hashCode())
+ *   5 &times; { int length, UTF-8 bytes }
+ *         subject, name, email, country, phone_number
+ *         (length 0 means null)
+ *
+ * Index (slot count &times; 8 bytes)
+ *   long  offset of a record + 1 (0 means an empty slot)
+ * </pre>
+ *
+ * <p>
+ * The index is an open-addressing hash table with linear probing, so a
+ * user is found with a few reads. {@link #getBySubject(String)} returns a
+ * {@link MappedUser}, which decodes a claim only when it is requested.
+ * </p>
+ *
+ * <p>
+ * Do not modify a file while it is mapped. To update users, write a new
+ * file and move it to the original path atomically.
+ * </p>
+ */
+public final class MappedUserStore implements UserStore
+{
+    static final int MAGIC       = 0x41555331; // "AUS1"
+    static final int VERSION     = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SLOT_SIZE   = 8;
+
+
+    /**
+     * The size of a mapped region. A {@link MappedByteBuffer} cannot be
+     * larger than 2 GB, so a large file is mapped as multiple regions.
+     */
+    private static final int CHUNK_BITS = 30;
+
+
+    private final MappedByteBuffer[] mChunks;
+    private final int mChunkBits;
+    private final long mChunkMask;
+    private final int mSize;
+    private final long mSlotCount;
+    private final long mIndexOffset;
+
+
+    private MappedUserStore(MappedByteBuffer[] chunks, int chunkBits)
+    {
+        mChunks    = chunks;
+        mChunkBits = chunkBits;
+        mChunkMask = (1L << chunkBits) - 1;
+
+        if (getInt(0) != MAGIC || getInt(4) != VERSION)
+        {
+            throw new IllegalArgumentException("Not a user store file of the supported version.");
+        }
+
+        mSize        = (int)getLong(8);
+        mSlotCount   = getLong(16);
+        mIndexOffset = getLong(24);
+    }
+
+
+    /**
+     * Map a user store file into memory.
+     *
+     * @param file
+     *         A file written by {@link MappedUserStoreWriter}.
+     *
+     * @throws IOException
+     *         Failed to map the file, or the file is not a user store file.
+     */
+    public static MappedUserStore open(Path file) throws IOException
+    {
+        return open(file, CHUNK_BITS);
+    }
+
+
+    /**
+     * Map a user store file into memory as regions of {@code 2^chunkBits}
+     * bytes. Tests use small regions to make values straddle them.
+     */
+    static MappedUserStore open(Path file, int chunkBits) throws IOException
+    {
+        long chunkSize = 1L << chunkBits;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size   = channel.size();
+            int  count  = (int)((size + chunkSize - 1) >>> chunkBits);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[count];
+
+            for (int i = 0; i < count; ++i)
+            {
+                long position = (long)i << chunkBits;
+
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, Math.min(chunkSize, size - position));
+                chunks[i].order(ByteOrder.BIG_ENDIAN);
+            }
+
+            // The mappings remain valid after the channel is closed.
+            return new MappedUserStore(chunks, chunkBits);
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e)
+        {
+            throw new IOException(file + " is not a valid user store file.", e);
+        }
+    }
+
+
+    @Override
+    public User getBySubject(String subject)
+    {
+        if (subject == null)
+        {
+            return null;
+        }
+
+        long record = find(subject);
+
+        if (record < 0)
+        {
+            return null;
+        }
+
+        return new MappedUser(this, record);
+    }
+
+
+    @Override
+    public int size()
+    {
+        return mSize;
+    }
+
+
+    private long find(String subject)
+    {
+        int hash  = subject.hashCode();
+        long mask = mSlotCount - 1;
+
+        for (long slot = spread(hash) & mask; ; slot = (slot + 1) & mask)
+        {
+            long entry = getLong(mIndexOffset + slot * SLOT_SIZE);
+
+            if (entry == 0)
+            {
+                return -1;
+            }
+
+            long record = entry - 1;
+
+            if (getInt(record) == hash && subjectEquals(record, subject))
+            {
+                return record;
+            }
+        }
+    }
+
+
+    static long spread(int hash)
+    {
+        // Mix the higher bits into the lower bits used as an index.
+        return (hash ^ (hash >>> 16)) & 0xFFFFFFFFL;
+    }
+
+
+    private boolean subjectEquals(long record, String subject)
+    {
+        long position = valuePosition(record, HeapUserStore.SUBJECT);
+        int  length   = getInt(position);
+        int  n        = subject.length();
+
+        // A character takes at least one byte in UTF-8.
+        if (length < n)
+        {
+            return false;
+        }
+
+        position += 4;
+
+        for (int i = 0; i < n; ++i)
+        {
+            char c = subject.charAt(i);
+            byte b = getByte(position + i);
+
+            // If either is not ASCII.
+            if (0x80 <= c || b < 0)
+            {
+                return subject.equals(getString(position, length));
+            }
+
+            if (c != b)
+            {
+                return false;
+            }
+        }
+
+        return length == n;
+    }
+
+
+    /**
+     * Get the position of the length of a value in a record.
+     */
+    private long valuePosition(long record, int column)
+    {
+        // Skip the hash.
+        long position = record + 4;
+
+        for (int i = 0; i < column; ++i)
+        {
+            position += 4 + getInt(position);
+        }
+
+        return position;
+    }
+
+
+    /**
+     * Decode a value in a record.
+     *
+     * @return
+     *         The value, or {@code null} if the value is empty.
+     */
+    String getValue(long record, int column)
+    {
+        long position = valuePosition(record, column);
+        int  length   = getInt(position);
+
+        if (length == 0)
+        {
+            return null;
+        }
+
+        return getString(position + 4, length);
+    }
+
+
+    private String getString(long position, int length)
+    {
+        int chunk    = (int)(position >>> mChunkBits);
+        int offset   = (int)(position & mChunkMask);
+        byte[] bytes = new byte[length];
+
+        if (offset + length <= mChunks[chunk].limit())
+        {
+            mChunks[chunk].get(offset, bytes);
+        }
+        else
+        {
+            // The bytes straddle two chunks.
+            for (int i = 0; i < length; ++i)
+            {
+                bytes[i] = getByte(position + i);
+            }
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    private byte getByte(long position)
+    {
+        return mChunks[(int)(position >>> mChunkBits)].get((int)(position & mChunkMask));
+    }
+
+
+    private int getInt(long position)
+    {
+        int chunk  = (int)(position >>> mChunkBits);
+        int offset = (int)(position & mChunkMask);
+
+        if (offset + 4 <= mChunks[chunk].limit())
+        {
+            return mChunks[chunk].getInt(offset);
+        }
+
+        // The value straddles two chunks.
+        int value = 0;
+
+        for (int i = 0; i < 4; ++i)
+        {
+            value = (value << 8) | (getByte(position + i) & 0xFF);
+        }
+
+        return value;
+    }
+
+
+    private long getLong(long position)
+    {
+        int chunk  = (int)(position >>> mChunkBits);
+        int offset = (int)(position & mChunkMask);
+
+        if (offset + 8 <= mChunks[chunk].limit())
+        {
+            return mChunks[chunk].getLong(offset);
+        }
+
+        // The value straddles two chunks.
+        return ((long)getInt(position) << 32) | (getInt(position + 4) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+/**
+ * Writer of files for {@link MappedUserStore}.
+ *
+ * <p>
+ * This converts a CSV file of users (see {@link UserCsvReader}) into the
+ * binary format of {@link MappedUserStore}. It can be run from the command
+ * line as follows.
+ * </p>
+ *
+ * <pre>
+ * java -cp target/spring-resource-server-<i>{version}</i>.jar \
+ *     -Dloader.main=com.authlete.spring.server.db.MappedUserStoreWriter \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     users.csv users.bin
+ * </pre>
+ *
+ * <p>
+ * Records are streamed to the output file, but the index is built in
+ * memory, which takes about 20 bytes per user.
+ * </p>
+ */
+public final class MappedUserStoreWriter
+{
+    private MappedUserStoreWriter()
+    {
+    }
+
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.err.println("Usage: MappedUserStoreWriter <input CSV file> <output file>");
+            System.exit(1);
+        }
+
+        int count = write(Paths.get(args[0]), Paths.get(args[1]));
+
+        System.out.printf("Wrote %d users to %s%n", count, args[1]);
+    }
+
+
+    /**
+     * Convert a CSV file of users into a file for {@link MappedUserStore}.
+     * When users have the same subject, the last one wins.
+     *
+     * @param csv
+     *         A CSV file. See {@link UserCsvReader} for the format.
+     *
+     * @param output
+     *         The file to write. It is overwritten if it exists.
+     *
+     * @return
+     *         The number of users written.
+     */
+    public static int write(Path csv, Path output) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(output,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+
+            // The header is written at the end.
+            out.write(new byte[MappedUserStore.HEADER_SIZE]);
+
+            Records records = new Records(out);
+
+            try
+            {
+                UserCsvReader.read(csv, records);
+            }
+            catch (UncheckedIOException e)
+            {
+                // Failed to write a record.
+                throw e.getCause();
+            }
+
+            out.flush();
+
+            // Build the index.
+            int    rows        = records.mCount;
+            long   indexOffset = MappedUserStore.HEADER_SIZE + records.mLength;
+            int    capacity    = Integer.highestOneBit(Math.max(2, rows) * 2 - 1) << 1;
+            int[]  slots       = new int[capacity];
+            int    size        = 0;
+
+            for (int row = 0; row < rows; ++row)
+            {
+                if (insert(channel, slots, records, row))
+                {
+                    ++size;
+                }
+            }
+
+            // Write the index.
+            for (int slot : slots)
+            {
+                out.writeLong((slot == 0) ? 0 : records.mOffsets[slot - 1] + 1);
+            }
+
+            out.flush();
+
+            // Write the header.
+            ByteBuffer header = ByteBuffer.allocate(MappedUserStore.HEADER_SIZE)
+                    .putInt(MappedUserStore.MAGIC)
+                    .putInt(MappedUserStore.VERSION)
+                    .putLong(size)
+                    .putLong(capacity)
+                    .putLong(indexOffset)
+                    .flip();
+
+            channel.write(header, 0);
+            channel.force(true);
+
+            return size;
+        }
+    }
+
+
+    /**
+     * Put a row into the index.
+     *
+     * @return
+     *         {@code true} if the subject of the row is new. {@code false}
+     *         if the row has replaced another row with the same subject.
+     */
+    private static boolean insert(FileChannel channel, int[] slots, Records records, int row) throws IOException
+    {
+        int hash = records.mHashes[row];
+        int mask = slots.length - 1;
+
+        for (int slot = (int)MappedUserStore.spread(hash) & mask; ; slot = (slot + 1) & mask)
+        {
+            int entry = slots[slot];
+
+            if (entry == 0)
+            {
+                slots[slot] = row + 1;
+                return true;
+            }
+
+            // If the slot has the same subject, the later row wins.
+            if (records.mHashes[entry - 1] == hash &&
+                    Arrays.equals(readSubject(channel, records.mOffsets[entry - 1]),
+                                  readSubject(channel, records.mOffsets[row])))
+            {
+                slots[slot] = row + 1;
+                return false;
+            }
+        }
+    }
+
+
+    private static byte[] readSubject(FileChannel channel, long record) throws IOException
+    {
+        // Skip the hash.
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length, record + 4);
+
+        ByteBuffer subject = ByteBuffer.allocate(length.flip().getInt());
+        readFully(channel, subject, record + 8);
+
+        return subject.array();
+    }
+
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("Unexpected end of file.");
+            }
+        }
+    }
+
+
+    /**
+     * Writer of records that remembers where each record is.
+     */
+    private static final class Records implements UserCsvReader.RecordHandler
+    {
+        private final DataOutputStream mOut;
+        private long[] mOffsets = new long[1024];
+        private int[] mHashes = new int[1024];
+        private int mCount;
+        private long mLength;
+
+
+        Records(DataOutputStream out)
+        {
+            mOut = out;
+        }
+
+
+        @Override
+        public void handle(String subject, String name, String email, String country, String phoneNumber)
+        {
+            if (mCount == mOffsets.length)
+            {
+                mOffsets = Arrays.copyOf(mOffsets, mCount * 2);
+                mHashes  = Arrays.copyOf(mHashes,  mCount * 2);
+            }
+
+            mOffsets[mCount] = MappedUserStore.HEADER_SIZE + mLength;
+            mHashes[mCount]  = subject.hashCode();
+            ++mCount;
+
+            try
+            {
+                mOut.writeInt(subject.hashCode());
+                mLength += 4;
+
+                // In the order of the columns.
+                writeValue(subject);
+                writeValue(name);
+                writeValue(email);
+                writeValue(country);
+                writeValue(phoneNumber);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+
+        private void writeValue(String value) throws IOException
+        {
+            byte[] bytes = (value == null) ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+
+            mOut.writeInt(bytes.length);
+            mOut.write(bytes);
+            mLength += 4 + bytes.length;
+        }
+    }
+}
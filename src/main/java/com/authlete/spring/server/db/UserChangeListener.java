@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+/**
+ * Listener of changes of user records.
+ *
+ * @see UserDao#addChangeListener(UserChangeListener)
+ */
+@FunctionalInterface
+public interface UserChangeListener
+{
+    /**
+     * Called when a user record has changed.
+     *
+     * @param subject
+     *         The subject of the user whose record has changed.
+     *         {@code null} means that any user record may have changed.
+     */
+    void onUserChanged(String subject);
+}
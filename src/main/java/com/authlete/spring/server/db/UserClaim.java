@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import com.authlete.common.types.StandardClaims;
+
+
+/**
+ * Claims of users supported by the user database.
+ *
+ * <p>
+ * A claim name is resolved to a constant of this enum once, and then the
+ * value of the claim is fetched from a user by the ordinal of the constant
+ * (see {@link IndexedUser}), instead of comparing the claim name with the
+ * names of all the supported claims every time.
+ * </p>
+ */
+public enum UserClaim
+{
+    /**
+     * "name" claim. This claim can be requested by including "profile" in
+     * "scope" parameter of an authorization request.
+     */
+    NAME(StandardClaims.NAME),
+
+
+    /**
+     * "email" claim. This claim can be requested by including "email" in
+     * "scope" parameter of an authorization request.
+     */
+    EMAIL(StandardClaims.EMAIL),
+
+
+    /**
+     * "address" claim. This claim can be requested by including "address"
+     * in "scope" parameter of an authorization request.
+     */
+    ADDRESS(StandardClaims.ADDRESS),
+
+
+    /**
+     * "phone_number" claim. This claim can be requested by including
+     * "phone" in "scope" parameter of an authorization request.
+     */
+    PHONE_NUMBER(StandardClaims.PHONE_NUMBER),
+    ;
+
+
+    private static final UserClaim[] sValues = values();
+    private static final Map<String, UserClaim> sByName = new HashMap<String, UserClaim>();
+
+
+    static
+    {
+        for (UserClaim claim : sValues)
+        {
+            sByName.put(claim.mName, claim);
+        }
+    }
+
+
+    private final String mName;
+
+
+    private UserClaim(String name)
+    {
+        mName = name;
+    }
+
+
+    /**
+     * Get the claim name.
+     */
+    public String getName()
+    {
+        return mName;
+    }
+
+
+    /**
+     * Get the number of the supported claims, i.e. the length of an array
+     * indexed by the ordinals.
+     */
+    public static int count()
+    {
+        return sValues.length;
+    }
+
+
+    /**
+     * Resolve a claim name.
+     *
+     * @param name
+     *         A claim name without a language tag.
+     *
+     * @return
+     *         The claim, or {@code null} if the claim is not supported.
+     */
+    public static UserClaim of(String name)
+    {
+        if (name == null)
+        {
+            return null;
+        }
+
+        return sByName.get(name);
+    }
+}
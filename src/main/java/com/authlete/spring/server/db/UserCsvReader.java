@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Reader of user records in CSV (RFC 4180).
+ *
+ * <p>
+ * The first line is a header that names the columns. The following
+ * column names are recognized and other columns are ignored. Only
+ * {@code subject} is mandatory.
+ * </p>
+ *
+ * <pre>
+ * subject,name,email,country,phone_number
+ * 1001,John Smith,john@example.com,USA,+1 (425) 555-1212
+ * 1002,Jane Smith,jane@example.com,Chile,+56 (2) 687 2400
+ * </pre>
+ *
+ * <p>
+ * Values may be enclosed in double quotes, and a double quote in a quoted
+ * value is escaped by another double quote. Line breaks in values are not
+ * supported. Empty lines and lines starting with {@code #} are skipped.
+ * </p>
+ */
+public final class UserCsvReader
+{
+    private static final String[] COLUMN_NAMES = new String[HeapUserStore.COLUMNS];
+
+
+    static
+    {
+        COLUMN_NAMES[HeapUserStore.SUBJECT]      = "subject";
+        COLUMN_NAMES[HeapUserStore.NAME]         = "name";
+        COLUMN_NAMES[HeapUserStore.EMAIL]        = "email";
+        COLUMN_NAMES[HeapUserStore.COUNTRY]      = "country";
+        COLUMN_NAMES[HeapUserStore.PHONE_NUMBER] = "phone_number";
+    }
+
+
+    private UserCsvReader()
+    {
+    }
+
+
+    /**
+     * Read user records from a CSV file into a {@link HeapUserStore}.
+     *
+     * @param file
+     *         A CSV file encoded in UTF-8.
+     *
+     * @throws IOException
+     *         Failed to read the file, or the file is malformed.
+     */
+    public static HeapUserStore read(Path file) throws IOException
+    {
+        HeapUserStore.Builder builder = new HeapUserStore.Builder();
+
+        read(file, (subject, name, email, country, phoneNumber) ->
+                builder.add(subject, name, email, country, phoneNumber));
+
+        return builder.build();
+    }
+
+
+    /**
+     * Read user records from a CSV file and pass them to the handler one
+     * by one.
+     *
+     * @param file
+     *         A CSV file encoded in UTF-8.
+     *
+     * @param handler
+     *         A handler of user records.
+     *
+     * @throws IOException
+     *         Failed to read the file, or the file is malformed.
+     */
+    public static void read(Path file, RecordHandler handler) throws IOException
+    {
+        try (BufferedReader reader = new BufferedReader(
+                Files.newBufferedReader(file, StandardCharsets.UTF_8), 1 << 16))
+        {
+            int[] positions  = null;
+            String[] values  = new String[HeapUserStore.COLUMNS];
+            List<String> row = new ArrayList<String>();
+            int lineNumber   = 0;
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                ++lineNumber;
+
+                if (line.isEmpty() || line.charAt(0) == '#')
+                {
+                    continue;
+                }
+
+                if (!split(line, row))
+                {
+                    throw malformed(file, lineNumber, "An unterminated quoted value.");
+                }
+
+                // The header.
+                if (positions == null)
+                {
+                    positions = toPositions(row);
+
+                    if (positions[HeapUserStore.SUBJECT] < 0)
+                    {
+                        throw malformed(file, lineNumber, "The 'subject' column is missing.");
+                    }
+
+                    continue;
+                }
+
+                for (int column = 0; column < HeapUserStore.COLUMNS; ++column)
+                {
+                    int position   = positions[column];
+                    values[column] = (0 <= position && position < row.size()) ? row.get(position) : null;
+                }
+
+                if (values[HeapUserStore.SUBJECT] == null || values[HeapUserStore.SUBJECT].isEmpty())
+                {
+                    throw malformed(file, lineNumber, "The subject is empty.");
+                }
+
+                handler.handle(
+                        values[HeapUserStore.SUBJECT],
+                        values[HeapUserStore.NAME],
+                        values[HeapUserStore.EMAIL],
+                        values[HeapUserStore.COUNTRY],
+                        values[HeapUserStore.PHONE_NUMBER]);
+            }
+        }
+    }
+
+
+    private static int[] toPositions(List<String> header)
+    {
+        int[] positions = new int[HeapUserStore.COLUMNS];
+
+        for (int column = 0; column < HeapUserStore.COLUMNS; ++column)
+        {
+            positions[column] = header.indexOf(COLUMN_NAMES[column]);
+        }
+
+        return positions;
+    }
+
+
+    /**
+     * Split a line into values.
+     *
+     * @return
+     *         {@code false} if the line has an unterminated quoted value.
+     */
+    private static boolean split(String line, List<String> values)
+    {
+        values.clear();
+
+        int length = line.length();
+        int i      = 0;
+
+        while (true)
+        {
+            if (i < length && line.charAt(i) == '"')
+            {
+                StringBuilder value = new StringBuilder();
+
+                for (++i; ; ++i)
+                {
+                    if (length <= i)
+                    {
+                        return false;
+                    }
+
+                    char c = line.charAt(i);
+
+                    if (c == '"')
+                    {
+                        // An escaped double quote.
+                        if (i + 1 < length && line.charAt(i + 1) == '"')
+                        {
+                            value.append('"');
+                            ++i;
+                            continue;
+                        }
+
+                        ++i;
+                        break;
+                    }
+
+                    value.append(c);
+                }
+
+                values.add(value.toString());
+
+                // Skip up to the next separator.
+                int comma = line.indexOf(',', i);
+                i = (comma < 0) ? length : comma;
+            }
+            else
+            {
+                int comma = line.indexOf(',', i);
+                int end   = (comma < 0) ? length : comma;
+
+                values.add(line.substring(i, end));
+                i = end;
+            }
+
+            if (length <= i)
+            {
+                return true;
+            }
+
+            // Skip the comma.
+            ++i;
+        }
+    }
+
+
+    private static IOException malformed(Path file, int lineNumber, String message)
+    {
+        return new IOException(String.format("%s:%d: %s", file, lineNumber, message));
+    }
+
+
+    /**
+     * Handler of user records.
+     */
+    @FunctionalInterface
+    public interface RecordHandler
+    {
+        void handle(String subject, String name, String email, String country, String phoneNumber);
+    }
+}
@@ -17,24 +17,109 @@
 package com.authlete.spring.server.db;
 
 
-import com.authlete.common.dto.Address;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import com.authlete.common.types.User;
 
 
 /**
  * Operations to access the user database.
+ *
+ * <p>
+ * Users are looked up in a {@link UserRepository}. By default, the
+ * repository holds two dummy users. When {@code user.store.file} is set
+ * in {@code application.properties}, the users are loaded from the file
+ * instead (see {@link FileUserStore}). When {@code user.store.type} is
+ * {@code jdbc}, the users are looked up in a relational database (see
+ * {@link JdbcUserRepository}).
+ * </p>
  */
 public class UserDao
 {
     /**
      * Dummy user database.
      */
-    private static final UserEntity[] sUserDB = {
-            new UserEntity("1001", "John Smith", "john@example.com",
-                    new Address().setCountry("USA"), "+1 (425) 555-1212"),
-            new UserEntity("1002", "Jane Smith", "jane@example.com",
-                    new Address().setCountry("Chile"), "+56 (2) 687 2400")
-    };
+    private static final UserStore sDummyStore = new HeapUserStore.Builder()
+            .add("1001", "John Smith", "john@example.com", "USA", "+1 (425) 555-1212")
+            .add("1002", "Jane Smith", "jane@example.com", "Chile", "+56 (2) 687 2400")
+            .build();
+
+
+    /**
+     * The user repository in use.
+     */
+    private static volatile UserRepository sRepository = sDummyStore;
+
+
+    /**
+     * Listeners of changes of user records.
+     */
+    private static final List<UserChangeListener> sChangeListeners =
+            new CopyOnWriteArrayList<UserChangeListener>();
+
+
+    /**
+     * Replace the user repository.
+     *
+     * @param repository
+     *         A user repository. If {@code null}, the dummy user database
+     *         is used.
+     */
+    public static void setRepository(UserRepository repository)
+    {
+        sRepository = (repository != null) ? repository : sDummyStore;
+
+        // Any user record may be different in the new repository.
+        notifyUserChanged(null);
+    }
+
+
+    /**
+     * Add a listener of changes of user records.
+     */
+    public static void addChangeListener(UserChangeListener listener)
+    {
+        if (listener != null)
+        {
+            sChangeListeners.add(listener);
+        }
+    }
+
+
+    /**
+     * Remove a listener of changes of user records.
+     */
+    public static void removeChangeListener(UserChangeListener listener)
+    {
+        sChangeListeners.remove(listener);
+    }
+
+
+    /**
+     * Notify the listeners that a user record has changed. Repositories
+     * call this method when they detect changes, and so should code that
+     * modifies the user database.
+     *
+     * @param subject
+     *         The subject of the user whose record has changed.
+     *         {@code null} means that any user record may have changed.
+     */
+    public static void notifyUserChanged(String subject)
+    {
+        for (UserChangeListener listener : sChangeListeners)
+        {
+            listener.onUserChanged(subject);
+        }
+    }
+
+
+    /**
+     * Get the user repository in use.
+     */
+    public static UserRepository getRepository()
+    {
+        return sRepository;
+    }
 
 
     /**
@@ -49,17 +134,27 @@ public class UserDao
      */
     public static User getBySubject(String subject)
     {
-        // For each user.
-        for (UserEntity ue : sUserDB)
-        {
-            if (ue.getSubject().equals(subject))
-            {
-                // Found the user whose subject matches the specified one.
-                return ue;
-            }
-        }
+        return sRepository.findBySubject(subject, null);
+    }
+
 
-        // Not found any user whose subject matches the specified one.
-        return null;
+    /**
+     * Get a user entity by a subject, loading only the specified claims
+     * if the repository supports it.
+     *
+     * @param subject
+     *         A subject (= unique identifier) of a user.
+     *
+     * @param claimNames
+     *         Names of the claims that will be read from the returned
+     *         user. {@code null} means all the claims.
+     *
+     * @return
+     *         A user entity that has the subject. {@code null} is
+     *         returned if there is no user who has the subject.
+     */
+    public static User getBySubject(String subject, String[] claimNames)
+    {
+        return sRepository.findBySubject(subject, claimNames);
     }
 }
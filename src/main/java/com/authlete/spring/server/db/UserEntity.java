@@ -17,15 +17,31 @@
 package com.authlete.spring.server.db;
 
 
+import java.util.HashMap;
+import java.util.Map;
 import com.authlete.common.dto.Address;
-import com.authlete.common.types.StandardClaims;
-import com.authlete.common.types.User;
+import com.authlete.common.util.Utils;
 
 
 /**
  * Dummy user entity that represents a user record.
+ *
+ * <p>
+ * Values of claims are held in an array indexed by the ordinals of
+ * {@link UserClaim}. Values are prepared when the entity is built (e.g.
+ * the {@link Address} object of the "address" claim), so fetching a
+ * claim does not create any object. Localized values, e.g. the value
+ * of {@code "name#ja"}, can be added by {@link #setClaim(UserClaim,
+ * String, Object)}.
+ * </p>
+ *
+ * <p>
+ * The JSON fragment of each value is rendered when it is requested for the
+ * first time and kept with the value (see {@link #getClaimFragment(UserClaim,
+ * String)}), so an entity held by a cache renders each value only once.
+ * </p>
  */
-public class UserEntity implements User
+public class UserEntity implements IndexedUser
 {
     /**
      * The subject (unique identifier) of the user.
@@ -34,27 +50,21 @@ public class UserEntity implements User
 
 
     /**
-     * The name of the user.
-     */
-    private String name;
-
-
-    /**
-     * The email address of the user.
+     * Values of the claims indexed by the ordinals of {@link UserClaim}.
      */
-    private String email;
+    private final Object[] claims = new Object[UserClaim.count()];
 
 
     /**
-     * The postal address of the user.
+     * JSON fragments of {@link #claims}, rendered on first use.
      */
-    private Address address;
+    private final String[] fragments = new String[UserClaim.count()];
 
 
     /**
-     * The phone number of the user.
+     * Localized values of the claims keyed by language tags.
      */
-    private String phoneNumber;
+    private Map<String, Localized> localizedClaims;
 
 
     /**
@@ -64,11 +74,57 @@ public class UserEntity implements User
             String subject, String name,
             String email, Address address, String phoneNumber)
     {
-        this.subject     = subject;
-        this.name        = name;
-        this.email       = email;
-        this.address     = address;
-        this.phoneNumber = phoneNumber;
+        this.subject = subject;
+
+        claims[UserClaim.NAME.ordinal()]         = name;
+        claims[UserClaim.EMAIL.ordinal()]        = email;
+        claims[UserClaim.ADDRESS.ordinal()]      = address;
+        claims[UserClaim.PHONE_NUMBER.ordinal()] = phoneNumber;
+    }
+
+
+    /**
+     * Set the value of a claim.
+     *
+     * <p>
+     * This method is not thread-safe. Call it before the entity is shared.
+     * </p>
+     *
+     * @param claim
+     *         A claim.
+     *
+     * @param languageTag
+     *         A language tag, e.g. {@code "ja"}. If {@code null}, the
+     *         default value of the claim is set.
+     *
+     * @param value
+     *         The value of the claim. It is returned as is.
+     *
+     * @return
+     *         {@code this} object.
+     */
+    public UserEntity setClaim(UserClaim claim, String languageTag, Object value)
+    {
+        int index = claim.ordinal();
+
+        if (languageTag == null)
+        {
+            claims[index]    = value;
+            fragments[index] = null;
+            return this;
+        }
+
+        if (localizedClaims == null)
+        {
+            localizedClaims = new HashMap<String, Localized>();
+        }
+
+        Localized localized = localizedClaims.computeIfAbsent(languageTag, tag -> new Localized());
+
+        localized.claims[index]    = value;
+        localized.fragments[index] = null;
+
+        return this;
     }
 
 
@@ -80,42 +136,95 @@ public class UserEntity implements User
 
 
     @Override
-    public Object getClaim(String claimName, String languageTag)
+    public Object getClaim(UserClaim claim, String languageTag)
     {
-        if (claimName == null)
+        if (claim == null)
         {
             return null;
         }
 
+        int index = claim.ordinal();
+
+        // If a localized value is available.
+        Localized localized = getLocalized(languageTag, index);
+
+        if (localized != null)
+        {
+            return localized.claims[index];
+        }
+
         // See "OpenID Connect Core 1.0, 5. Claims".
-        switch (claimName)
+        return claims[index];
+    }
+
+
+    @Override
+    public String getClaimFragment(UserClaim claim, String languageTag)
+    {
+        if (claim == null)
         {
-            case StandardClaims.NAME:
-                // "name" claim. This claim can be requested by including "profile"
-                // in "scope" parameter of an authorization request.
-                return name;
-
-            case StandardClaims.EMAIL:
-                // "email" claim. This claim can be requested by including "email"
-                // in "scope" parameter of an authorization request.
-                return email;
-
-            case StandardClaims.ADDRESS:
-                // "address" claim. This claim can be requested by including "address"
-                // in "scope" parameter of an authorization request.
-                return address;
-
-            case StandardClaims.PHONE_NUMBER:
-                // "phone_number" claim. This claim can be requested by included "phone"
-                // in "scope" parameter of an authorization request.
-                return phoneNumber;
+            return null;
+        }
 
-            default:
-                // Unsupported claim.
-                return null;
+        int index = claim.ordinal();
+
+        // If a localized value is available.
+        Localized localized = getLocalized(languageTag, index);
+
+        if (localized != null)
+        {
+            return getFragment(localized.claims, localized.fragments, index);
         }
+
+        return getFragment(claims, fragments, index);
     }
 
+
+    /**
+     * Get the localized values that have a value of the claim, or
+     * {@code null} if the claim has no value for the language tag.
+     */
+    private Localized getLocalized(String languageTag, int index)
+    {
+        if (languageTag == null || localizedClaims == null)
+        {
+            return null;
+        }
+
+        Localized localized = localizedClaims.get(languageTag);
+
+        if (localized == null || localized.claims[index] == null)
+        {
+            return null;
+        }
+
+        return localized;
+    }
+
+
+    private static String getFragment(Object[] values, String[] fragments, int index)
+    {
+        Object value = values[index];
+
+        if (value == null)
+        {
+            return null;
+        }
+
+        String fragment = fragments[index];
+
+        if (fragment == null)
+        {
+            // Threads racing here render the same fragment, and a String
+            // is safely published, so no lock is needed.
+            fragment = Utils.toJson(value);
+            fragments[index] = fragment;
+        }
+
+        return fragment;
+    }
+
+
     @Override
     public Object getAttribute(String attributeName)
     {
@@ -135,4 +244,15 @@ public class UserEntity implements User
                 return null;
         }
     }
+
+
+    /**
+     * Values and JSON fragments of the claims for a language tag, indexed
+     * by the ordinals of {@link UserClaim}.
+     */
+    private static final class Localized
+    {
+        private final Object[] claims    = new Object[UserClaim.count()];
+        private final String[] fragments = new String[UserClaim.count()];
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import com.authlete.common.types.User;
+
+
+/**
+ * Service provider interface of user databases.
+ *
+ * <p>
+ * {@link UserDao} delegates lookups of users to an implementation of
+ * this interface. The in-memory stores ({@link UserStore}) and the JDBC
+ * implementation ({@link JdbcUserRepository}) are provided. To use
+ * another database, implement this interface and pass an instance to
+ * {@link UserDao#setRepository(UserRepository)}.
+ * </p>
+ *
+ * <p>
+ * Implementations must be safe for concurrent use.
+ * </p>
+ */
+public interface UserRepository
+{
+    /**
+     * Find a user by a subject.
+     *
+     * @param subject
+     *         A subject (= unique identifier) of a user.
+     *
+     * @param claimNames
+     *         Names of the claims that will be read from the returned user,
+     *         e.g. {@code "name"} and {@code "email"}. A name may have a
+     *         language tag, e.g. {@code "name#ja"}. An implementation may
+     *         load only these claims. {@code null} means all the claims.
+     *
+     * @return
+     *         A user that has the subject. {@code null} is returned if
+     *         there is no user who has the subject.
+     */
+    User findBySubject(String subject, String[] claimNames);
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import com.authlete.common.types.User;
+
+
+/**
+ * A store of user records, looked up by subject.
+ *
+ * <p>
+ * Implementations must be safe for concurrent use.
+ * </p>
+ *
+ * @see UserDao
+ */
+public interface UserStore extends UserRepository
+{
+    /**
+     * Find a user by a subject. Stores hold all the claims of users, so
+     * {@code claimNames} is ignored.
+     */
+    @Override
+    default User findBySubject(String subject, String[] claimNames)
+    {
+        return getBySubject(subject);
+    }
+
+
+
+    /**
+     * Get a user by a subject.
+     *
+     * @param subject
+     *         A subject (= unique identifier) of a user.
+     *
+     * @return
+     *         A user that has the subject. {@code null} is returned if
+     *         there is no user who has the subject.
+     */
+    User getBySubject(String subject);
+
+
+    /**
+     * Get the number of users in this store.
+     */
+    int size();
+}
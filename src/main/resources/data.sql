@@ -0,0 +1,4 @@
+-- Dummy users. The same as the dummy user database of UserDao.
+MERGE INTO users (subject, name, email, country, phone_number) KEY (subject) VALUES
+    ('1001', 'John Smith', 'john@example.com', 'USA',   '+1 (425) 555-1212'),
+    ('1002', 'Jane Smith', 'jane@example.com', 'Chile', '+56 (2) 687 2400');
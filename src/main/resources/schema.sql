@@ -0,0 +1,8 @@
+-- The user database used when user.store.type=jdbc.
+CREATE TABLE IF NOT EXISTS users (
+    subject      VARCHAR(255) NOT NULL PRIMARY KEY,
+    name         VARCHAR(255),
+    email        VARCHAR(255),
+    country      VARCHAR(255),
+    phone_number VARCHAR(64)
+);
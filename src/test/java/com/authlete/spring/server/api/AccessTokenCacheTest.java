@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import com.authlete.common.dto.IntrospectionResponse;
+import com.authlete.jakarta.AccessTokenInfo;
+
+
+/**
+ * Tests of refresh-ahead of {@link AccessTokenCache}.
+ */
+public class AccessTokenCacheTest
+{
+    private static final String ACCESS_TOKEN = "access-token";
+
+
+    private AccessTokenCache mCache;
+    private AccessTokenInfo mInfo;
+
+
+    @BeforeEach
+    public void setUp()
+    {
+        // Every hit triggers a refresh because the threshold is longer
+        // than the TTL.
+        mCache = new AccessTokenCache(true, 100, Duration.ofSeconds(60),
+                true, Duration.ofSeconds(120), 1, 1, false);
+
+        IntrospectionResponse response = new IntrospectionResponse();
+        response.setExpiresAt(System.currentTimeMillis() + 3600_000L);
+
+        mInfo = new AccessTokenInfo(ACCESS_TOKEN, response);
+
+        mCache.put(ACCESS_TOKEN, mInfo);
+    }
+
+
+    @AfterEach
+    public void tearDown()
+    {
+        mCache.shutdown();
+    }
+
+
+    @Test
+    public void rejectionEvictsEntry()
+    {
+        mCache.get(ACCESS_TOKEN, failingWith(new AtomicInteger(), 401));
+
+        await(() -> mCache.peek(ACCESS_TOKEN) == null);
+
+        assertNull(mCache.peek(ACCESS_TOKEN));
+    }
+
+
+    @Test
+    public void authleteFailureKeepsEntry()
+    {
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, AccessTokenInfo> refresher = failingWith(calls, 500);
+
+        // A later hit can refresh the entry again only after the failed
+        // refresh has finished and kept the entry.
+        await(() -> {
+            mCache.get(ACCESS_TOKEN, refresher);
+            return calls.get() >= 2;
+        });
+
+        assertSame(mInfo, mCache.peek(ACCESS_TOKEN));
+    }
+
+
+    @Test
+    public void unexpectedErrorKeepsEntry()
+    {
+        AtomicInteger calls = new AtomicInteger();
+
+        await(() -> {
+            mCache.get(ACCESS_TOKEN, token -> {
+                calls.incrementAndGet();
+                throw new IllegalStateException("Connection refused");
+            });
+            return calls.get() >= 2;
+        });
+
+        assertSame(mInfo, mCache.peek(ACCESS_TOKEN));
+    }
+
+
+    private static Function<String, AccessTokenInfo> failingWith(AtomicInteger calls, int status)
+    {
+        return token -> {
+            calls.incrementAndGet();
+            throw new WebApplicationException(status);
+        };
+    }
+
+
+    private static void await(BooleanSupplier condition)
+    {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+
+        while (!condition.getAsBoolean())
+        {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+
+            try
+            {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
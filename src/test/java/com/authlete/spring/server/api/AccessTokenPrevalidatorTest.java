@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+
+/**
+ * Tests of {@link AccessTokenPrevalidator}.
+ */
+public class AccessTokenPrevalidatorTest
+{
+    private static final int MAX_LENGTH = 16;
+
+
+    private final AccessTokenPrevalidator mPrevalidator = new AccessTokenPrevalidator(MAX_LENGTH);
+
+
+    private ResponseEntity<?> reject(String accessToken)
+    {
+        RejectedAccessTokenException e = mPrevalidator.check(accessToken);
+
+        assertNotNull(e, accessToken);
+
+        return e.getResponseEntity();
+    }
+
+
+    private static void assertError(int status, String error, ResponseEntity<?> entity)
+    {
+        assertEquals(status, entity.getStatusCode().value());
+        assertTrue(entity.getHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE)
+                .contains("error=\"" + error + "\""));
+    }
+
+
+    @Test
+    public void b64TokensAreAccepted()
+    {
+        assertNull(mPrevalidator.check("a"));
+        assertNull(mPrevalidator.check("AZaz09-._~+/"));
+        assertNull(mPrevalidator.check("abc=="));
+        assertNull(mPrevalidator.check("eyJh.e30.c2ln"));
+    }
+
+
+    @Test
+    public void missingTokenIsBadRequest()
+    {
+        assertError(400, "invalid_request", reject(null));
+        assertError(400, "invalid_request", reject(""));
+    }
+
+
+    @Test
+    public void malformedTokenIsUnauthorized()
+    {
+        for (String accessToken : new String[] {
+                "=", "==abc", "abc=d", "a b", "a,b", "a%20b", "a\"b", "日本" })
+        {
+            assertError(401, "invalid_token", reject(accessToken));
+        }
+    }
+
+
+    @Test
+    public void tokenIsLimitedInLength()
+    {
+        String longest = "a".repeat(MAX_LENGTH);
+
+        assertNull(mPrevalidator.check(longest));
+
+        ResponseEntity<?> entity = reject(longest + "a");
+
+        assertError(401, "invalid_token", entity);
+        assertTrue(entity.getHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE).contains("too long"));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Tests of the AIMD limit of {@link AuthleteConcurrencyLimiter}.
+ */
+public class AuthleteConcurrencyLimiterTest
+{
+    private static AuthleteConcurrencyLimiter limiter(int initialLimit, int minLimit, int maxLimit)
+    {
+        return new AuthleteConcurrencyLimiter(true, initialLimit, minLimit, maxLimit, 0.5,
+                Duration.ofMinutes(1), Duration.ofSeconds(1),
+                new ResourceServerMetrics(new SimpleMeterRegistry()));
+    }
+
+
+    @Test
+    public void limitIsEnforced()
+    {
+        AuthleteConcurrencyLimiter limiter = limiter(2, 1, 10);
+
+        limiter.acquire();
+        limiter.acquire();
+
+        assertThrows(OverloadedException.class, limiter::acquire);
+        assertEquals(1, limiter.getRejections());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+
+    @Test
+    public void droppedCallDecreasesLimit()
+    {
+        AuthleteConcurrencyLimiter limiter = limiter(8, 3, 10);
+
+        limiter.release(limiter.acquire(), true);
+        assertEquals(4, limiter.getLimit());
+
+        // Never below the minimum.
+        limiter.release(limiter.acquire(), true);
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+
+    @Test
+    public void limitGrowsOnlyWhileInUse()
+    {
+        AuthleteConcurrencyLimiter limiter = limiter(4, 1, 5);
+
+        // 1 of 4 in use.
+        limiter.release(limiter.acquire(), false);
+        assertEquals(4, limiter.getLimit());
+
+        // 2 of 4 in use.
+        long first = limiter.acquire();
+        limiter.release(limiter.acquire(), false);
+        limiter.release(first, false);
+        assertEquals(5, limiter.getLimit());
+    }
+
+
+    @Test
+    public void concurrentCallsBalance() throws InterruptedException
+    {
+        int threads = 8;
+        int calls   = 1000;
+
+        AuthleteConcurrencyLimiter limiter = limiter(10, 1, 10);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; ++i)
+        {
+            Thread.ofVirtual().start(() -> {
+                for (int j = 0; j < calls; ++j)
+                {
+                    try
+                    {
+                        limiter.release(limiter.acquire(), (j % 2) == 0);
+                    }
+                    catch (OverloadedException e)
+                    {
+                        // Shed.
+                    }
+                }
+
+                done.countDown();
+            });
+        }
+
+        done.await();
+
+        assertEquals(0, limiter.getInFlight());
+        assertTrue(1 <= limiter.getLimit() && limiter.getLimit() <= 10);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of parsing of the {@code codes} request parameter by {@link
+ * CountryBatchRenderer}.
+ */
+public class CountryBatchRendererTest
+{
+    @Test
+    public void repeatedListsAreFlattened()
+    {
+        assertArrayEquals(new String[] { "JP", "US", "FR" },
+                CountryBatchRenderer.parseCodes(new String[] { "JP,US", "FR" }));
+    }
+
+
+    @Test
+    public void alreadySplitValuesAreKept()
+    {
+        // Spring MVC splits a single value of a String[] parameter.
+        assertArrayEquals(new String[] { "JP", "US" },
+                CountryBatchRenderer.parseCodes(new String[] { "JP", "US" }));
+    }
+
+
+    @Test
+    public void missingParameterIsNull()
+    {
+        assertNull(CountryBatchRenderer.parseCodes(null));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.time.Duration;
+import java.util.Date;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import com.authlete.jakarta.AccessTokenInfo;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+
+/**
+ * Tests of {@link JwtAccessTokenValidator}.
+ */
+public class JwtAccessTokenValidatorTest
+{
+    private static final String ISSUER   = "https://as.example.com";
+    private static final String AUDIENCE = "https://rs.example.com";
+    private static final long   SECOND   = 1000L;
+
+
+    private static RSAKey sKey;
+    private static RSAKey sOtherKey;
+    private static JwtAccessTokenValidator sValidator;
+
+
+    @BeforeAll
+    public static void setUpClass() throws JOSEException
+    {
+        sKey      = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        sOtherKey = new RSAKeyGenerator(2048).keyID("key-1").generate();
+
+        // The clock skew is 30 seconds.
+        sValidator = new JwtAccessTokenValidator(
+                new JWKSet(sKey.toPublicJWK()), ISSUER, AUDIENCE, Duration.ofSeconds(30));
+    }
+
+
+    private static JWTClaimsSet.Builder claims()
+    {
+        long now = System.currentTimeMillis();
+
+        return new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .audience(AUDIENCE)
+                .subject("1001")
+                .claim("scope", "openid profile")
+                .claim("client_id", "5899463614448063")
+                .expirationTime(new Date(now + 3600 * SECOND));
+    }
+
+
+    private static String sign(RSAKey key, String kid, JWTClaimsSet claims) throws JOSEException
+    {
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(kid).build(), claims);
+
+        jwt.sign(new RSASSASigner(key));
+
+        return jwt.serialize();
+    }
+
+
+    private static String sign(JWTClaimsSet claims) throws JOSEException
+    {
+        return sign(sKey, sKey.getKeyID(), claims);
+    }
+
+
+    private static void assertInvalid(String accessToken)
+    {
+        WebApplicationException e = assertThrows(WebApplicationException.class,
+                () -> sValidator.validate(accessToken));
+
+        assertEquals(401, e.getResponse().getStatus());
+    }
+
+
+    @Test
+    public void validTokenIsAccepted() throws JOSEException
+    {
+        AccessTokenInfo info = sValidator.validate(sign(claims().build()));
+
+        assertNotNull(info);
+        assertEquals("1001", info.getSubject());
+        assertArrayEquals(new String[] { "openid", "profile" }, info.getScopes());
+    }
+
+
+    @Test
+    public void badSignatureIsRejected() throws JOSEException
+    {
+        // Signed by another key with the same key ID.
+        assertInvalid(sign(sOtherKey, sKey.getKeyID(), claims().build()));
+    }
+
+
+    @Test
+    public void expirationIsCheckedWithClockSkew() throws JOSEException
+    {
+        long now = System.currentTimeMillis();
+
+        assertNotNull(sValidator.validate(sign(
+                claims().expirationTime(new Date(now - 10 * SECOND)).build())));
+
+        assertInvalid(sign(
+                claims().expirationTime(new Date(now - 60 * SECOND)).build()));
+    }
+
+
+    @Test
+    public void notBeforeIsCheckedWithClockSkew() throws JOSEException
+    {
+        long now = System.currentTimeMillis();
+
+        assertNotNull(sValidator.validate(sign(
+                claims().notBeforeTime(new Date(now + 10 * SECOND)).build())));
+
+        assertInvalid(sign(
+                claims().notBeforeTime(new Date(now + 60 * SECOND)).build()));
+    }
+
+
+    @Test
+    public void issuerMismatchIsRejected() throws JOSEException
+    {
+        assertInvalid(sign(claims().issuer("https://other.example.com").build()));
+        assertInvalid(sign(claims().issuer(null).build()));
+    }
+
+
+    @Test
+    public void audienceMismatchIsRejected() throws JOSEException
+    {
+        assertInvalid(sign(claims().audience("https://other.example.com").build()));
+        assertInvalid(sign(claims().audience((String)null).build()));
+    }
+
+
+    @Test
+    public void unknownKeyIsLeftToIntrospection() throws JOSEException
+    {
+        assertNull(sValidator.validate(sign(sOtherKey, "key-2", claims().build())));
+        assertNull(sValidator.validate(sign(sKey, null, claims().build())));
+    }
+
+
+    @Test
+    public void tokenWithoutExpirationIsLeftToIntrospection() throws JOSEException
+    {
+        assertNull(sValidator.validate(sign(claims().expirationTime(null).build())));
+    }
+
+
+    @Test
+    public void opaqueTokenIsLeftToIntrospection()
+    {
+        assertNull(sValidator.validate("Ddb4Hh_Fa3SxW9_wQ4Hc_kV2vr3mAx3mPU3b1rLNzqg"));
+        assertNull(sValidator.validate("not.a.jwt"));
+    }
+
+
+    @Test
+    public void disabledValidatorLeavesEverythingToIntrospection() throws JOSEException
+    {
+        JwtAccessTokenValidator validator =
+                new JwtAccessTokenValidator(false, "", "", "", Duration.ofSeconds(30), Duration.ofMinutes(5));
+
+        assertNull(validator.validate(sign(claims().build())));
+    }
+}
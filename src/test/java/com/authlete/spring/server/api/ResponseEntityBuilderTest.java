@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+
+/**
+ * Tests of adaptation of JAX-RS responses by {@link ResponseEntityBuilder}.
+ */
+public class ResponseEntityBuilderTest
+{
+    private static Response response()
+    {
+        return Response.status(401)
+                .header(HttpHeaders.CONTENT_TYPE, "application/json;charset=UTF-8")
+                .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"")
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .entity("{\"error\":\"invalid_token\"}")
+                .build();
+    }
+
+
+    @Test
+    public void responseIsAdapted()
+    {
+        ResponseEntity<?> entity = new ResponseEntityBuilder().response(response()).build();
+
+        assertEquals(401, entity.getStatusCode().value());
+        assertEquals("Bearer error=\"invalid_token\"",
+                entity.getHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE));
+        assertArrayEquals("{\"error\":\"invalid_token\"}".getBytes(StandardCharsets.UTF_8),
+                (byte[])entity.getBody());
+    }
+
+
+    @Test
+    public void sharedEntityHasReadOnlyCopyOfHeaders()
+    {
+        ResponseEntity<?> entity = new ResponseEntityBuilder().response(response()).buildShared();
+        HttpHeaders headers = entity.getHeaders();
+
+        assertEquals(List.of("no-store"), headers.get(HttpHeaders.CACHE_CONTROL));
+        assertEquals("application/json;charset=UTF-8", headers.getFirst(HttpHeaders.CONTENT_TYPE));
+        assertThrows(UnsupportedOperationException.class,
+                () -> headers.add(HttpHeaders.PRAGMA, "no-cache"));
+    }
+
+
+    @Test
+    public void addedHeaderDoesNotModifyResponse()
+    {
+        Response response = response();
+
+        new ResponseEntityBuilder().response(response).header(HttpHeaders.PRAGMA, "no-cache").build();
+
+        assertEquals(null, response.getHeaderString(HttpHeaders.PRAGMA));
+    }
+}
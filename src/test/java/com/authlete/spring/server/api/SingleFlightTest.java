@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import com.authlete.common.dto.IntrospectionResponse;
+import com.authlete.jakarta.AccessTokenInfo;
+
+
+/**
+ * Tests of {@link SingleFlight}.
+ */
+public class SingleFlightTest
+{
+    private static final String ACCESS_TOKEN = "access-token";
+
+
+    private final SingleFlight mSingleFlight = new SingleFlight();
+
+
+    private static AccessTokenInfo info()
+    {
+        return new AccessTokenInfo(ACCESS_TOKEN, new IntrospectionResponse());
+    }
+
+
+    @Test
+    public void asyncTasksForSameKeyAreShared()
+    {
+        CompletableFuture<AccessTokenInfo> task = new CompletableFuture<AccessTokenInfo>();
+        AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<AccessTokenInfo> first = mSingleFlight.executeAsync(ACCESS_TOKEN, () -> {
+            started.incrementAndGet();
+            return task;
+        });
+
+        CompletableFuture<AccessTokenInfo> second = mSingleFlight.executeAsync(ACCESS_TOKEN, () -> {
+            started.incrementAndGet();
+            return new CompletableFuture<AccessTokenInfo>();
+        });
+
+        assertSame(first, second);
+        assertEquals(1, started.get());
+
+        AccessTokenInfo info = info();
+        task.complete(info);
+
+        assertSame(info, first.join());
+    }
+
+
+    @Test
+    public void blockingCallerJoinsAsyncTask() throws InterruptedException
+    {
+        AccessTokenInfo info = info();
+        CompletableFuture<AccessTokenInfo> task = new CompletableFuture<AccessTokenInfo>();
+        AtomicReference<AccessTokenInfo> result = new AtomicReference<AccessTokenInfo>();
+
+        mSingleFlight.executeAsync(ACCESS_TOKEN, () -> task);
+
+        // A blocking endpoint arrives while a reactive one is in flight.
+        Thread blocking = new Thread(() -> result.set(mSingleFlight.execute(ACCESS_TOKEN, () -> {
+            throw new AssertionError("The task in flight must be shared.");
+        })));
+
+        blocking.start();
+
+        // Wait until the blocking caller waits for the task in flight.
+        while (blocking.getState() != Thread.State.WAITING)
+        {
+            Thread.sleep(1);
+        }
+
+        task.complete(info);
+        blocking.join();
+
+        assertSame(info, result.get());
+    }
+
+
+    @Test
+    public void completedTaskIsForgotten()
+    {
+        CompletableFuture<AccessTokenInfo> first =
+                mSingleFlight.executeAsync(ACCESS_TOKEN, () -> CompletableFuture.completedFuture(info()));
+
+        CompletableFuture<AccessTokenInfo> second =
+                mSingleFlight.executeAsync(ACCESS_TOKEN, () -> CompletableFuture.completedFuture(info()));
+
+        assertNotSame(first, second);
+    }
+
+
+    @Test
+    public void failureIsSharedAndForgotten()
+    {
+        IllegalStateException error = new IllegalStateException();
+
+        CompletableFuture<AccessTokenInfo> failed = mSingleFlight.executeAsync(ACCESS_TOKEN, () -> {
+            throw error;
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertSame(error, e.getCause());
+
+        AccessTokenInfo info = info();
+        assertSame(info, mSingleFlight.execute(ACCESS_TOKEN, () -> info));
+    }
+}
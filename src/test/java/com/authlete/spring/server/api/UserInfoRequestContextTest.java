@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Tests of {@link UserInfoRequestContext} with a shared {@link
+ * UserInfoRequestHandlerSpiImpl}.
+ */
+public class UserInfoRequestContextTest
+{
+    private final UserInfoRequestHandlerSpiImpl mHandler =
+            new UserInfoRequestHandlerSpiImpl(new ResourceServerMetrics(new SimpleMeterRegistry()));
+
+
+    @Test
+    public void contextsOfOneHandlerAreIndependent()
+    {
+        UserInfoRequestContext john = mHandler.newContext();
+        UserInfoRequestContext jane = mHandler.newContext();
+
+        john.prepareUserClaims("1001", new String[] { "name" });
+        jane.prepareUserClaims("1002", new String[] { "name" });
+
+        assertEquals("John Smith", john.getUserClaim("name", null));
+        assertEquals("Jane Smith", jane.getUserClaim("name", null));
+    }
+
+
+    @Test
+    public void unknownUserHasNoClaims()
+    {
+        UserInfoRequestContext context = mHandler.newContext();
+
+        context.prepareUserClaims("9999", new String[] { "name" });
+
+        assertNull(context.getUserClaim("name", null));
+    }
+}
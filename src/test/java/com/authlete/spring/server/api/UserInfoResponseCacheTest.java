@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import com.authlete.common.dto.IntrospectionResponse;
+import com.authlete.jakarta.AccessTokenInfo;
+import com.authlete.spring.server.db.UserDao;
+
+
+/**
+ * Tests of {@link UserInfoResponseCache}.
+ */
+public class UserInfoResponseCacheTest
+{
+    private static final String ACCESS_TOKEN = "access-token";
+
+
+    private UserInfoResponseCache mCache;
+    private AccessTokenInfo mInfo;
+    private ResponseEntity<?> mResponse;
+
+
+    @BeforeEach
+    public void setUp()
+    {
+        mCache = new UserInfoResponseCache(
+                true, 100, Duration.ofSeconds(60), Duration.ofSeconds(10), false);
+
+        IntrospectionResponse response = new IntrospectionResponse();
+        response.setSubject("1001");
+        response.setExpiresAt(System.currentTimeMillis() + 3600_000L);
+
+        mInfo     = new AccessTokenInfo(ACCESS_TOKEN, response);
+        mResponse = ResponseEntity.ok("{\"sub\":\"1001\"}");
+    }
+
+
+    @AfterEach
+    public void tearDown()
+    {
+        mCache.shutdown();
+    }
+
+
+    @Test
+    public void responseIsCached()
+    {
+        mCache.put(ACCESS_TOKEN, mInfo, mResponse, mCache.generation());
+
+        assertSame(mResponse, mCache.get(ACCESS_TOKEN));
+    }
+
+
+    @Test
+    public void changeOfUserRemovesResponse()
+    {
+        mCache.put(ACCESS_TOKEN, mInfo, mResponse, mCache.generation());
+
+        UserDao.notifyUserChanged("1001");
+
+        assertNull(mCache.get(ACCESS_TOKEN));
+    }
+
+
+    @Test
+    public void responseBuiltBeforeChangeIsNotCached()
+    {
+        // The user is looked up, then the record changes before the
+        // response is put.
+        long generation = mCache.generation();
+
+        UserDao.notifyUserChanged("1001");
+
+        mCache.put(ACCESS_TOKEN, mInfo, mResponse, generation);
+
+        assertNull(mCache.get(ACCESS_TOKEN));
+    }
+
+
+    @Test
+    public void responseIsCachedWithoutExpirationTime()
+    {
+        mCache.put(ACCESS_TOKEN, "1001", mResponse, mCache.generation());
+
+        assertSame(mResponse, mCache.get(ACCESS_TOKEN));
+
+        UserDao.notifyUserChanged("1001");
+
+        assertNull(mCache.get(ACCESS_TOKEN));
+    }
+
+
+    @Test
+    public void ttlForUnknownExpirationIsBoundedByMaxTtl()
+    {
+        UserInfoResponseCache cache = new UserInfoResponseCache(
+                true, 100, Duration.ZERO, Duration.ofSeconds(10), false);
+
+        try
+        {
+            cache.put(ACCESS_TOKEN, "1001", mResponse, cache.generation());
+
+            assertNull(cache.get(ACCESS_TOKEN));
+        }
+        finally
+        {
+            cache.shutdown();
+        }
+    }
+}
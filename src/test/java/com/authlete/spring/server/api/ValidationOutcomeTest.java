@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.time.Duration;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+import com.authlete.spring.server.api.ResourceServerMetrics.ValidationOutcome;
+
+
+/**
+ * Tests of the classification of {@link ValidationOutcome}.
+ */
+public class ValidationOutcomeTest
+{
+    @Test
+    public void overloadIsShed()
+    {
+        OverloadedException overloaded = new OverloadedException(Duration.ofSeconds(1));
+
+        assertEquals(ValidationOutcome.SHED, ValidationOutcome.of(overloaded));
+        assertEquals(ValidationOutcome.SHED, ValidationOutcome.of(overloaded.getResponse()));
+        assertEquals("shed", ValidationOutcome.SHED.getTag());
+    }
+
+
+    @Test
+    public void authleteFailureIsError()
+    {
+        assertEquals(ValidationOutcome.AUTHLETE_ERROR, ValidationOutcome.of(new WebApplicationException(500)));
+        assertEquals(ValidationOutcome.AUTHLETE_ERROR, ValidationOutcome.of(new IllegalStateException()));
+    }
+
+
+    @Test
+    public void rejectionsAreClassified()
+    {
+        assertEquals(ValidationOutcome.VALID, ValidationOutcome.of((Throwable)null));
+        assertEquals(ValidationOutcome.INVALID, ValidationOutcome.of(new WebApplicationException(401)));
+        assertEquals(ValidationOutcome.INSUFFICIENT_SCOPE, ValidationOutcome.of(new WebApplicationException(403)));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import com.authlete.common.dto.Address;
+
+
+/**
+ * Tests of {@link JdbcUserRepository} against an embedded H2 database
+ * created from {@code schema.sql} and {@code data.sql}.
+ */
+public class JdbcUserRepositoryTest
+{
+    private EmbeddedDatabase mDatabase;
+    private RecordingJdbcTemplate mJdbcTemplate;
+    private JdbcUserRepository mRepository;
+
+
+    @BeforeEach
+    public void setUp()
+    {
+        mDatabase = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScripts("schema.sql", "data.sql")
+                .build();
+
+        mJdbcTemplate = new RecordingJdbcTemplate(mDatabase);
+        mRepository   = new JdbcUserRepository(mJdbcTemplate, 100, Duration.ofMinutes(1));
+    }
+
+
+    @AfterEach
+    public void tearDown()
+    {
+        mDatabase.shutdown();
+    }
+
+
+    @Test
+    public void selectsOnlyRequestedColumns()
+    {
+        UserEntity user = find("1001", "email");
+
+        assertEquals(List.of("SELECT subject, email FROM users WHERE subject = ?"), mJdbcTemplate.mQueries);
+        assertEquals("1001", user.getSubject());
+        assertEquals("john@example.com", user.getClaim(UserClaim.EMAIL, null));
+        assertNull(user.getClaim(UserClaim.NAME, null));
+        assertNull(user.getClaim(UserClaim.ADDRESS, null));
+    }
+
+
+    @Test
+    public void languageTagsAndUnknownClaimsAreIgnored()
+    {
+        UserEntity user = find("1002", "name#ja", "birthdate");
+
+        assertEquals(List.of("SELECT subject, name FROM users WHERE subject = ?"), mJdbcTemplate.mQueries);
+        assertEquals("Jane Smith", user.getClaim(UserClaim.NAME, "ja"));
+    }
+
+
+    @Test
+    public void nullClaimNamesSelectAllColumns()
+    {
+        UserEntity user = (UserEntity)mRepository.findBySubject("1001", null);
+
+        assertEquals(List.of("SELECT subject, name, email, country, phone_number FROM users WHERE subject = ?"),
+                mJdbcTemplate.mQueries);
+        assertEquals("USA", ((Address)user.getClaim(UserClaim.ADDRESS, null)).getCountry());
+        assertEquals("+1 (425) 555-1212", user.getClaim(UserClaim.PHONE_NUMBER, null));
+    }
+
+
+    @Test
+    public void cachedColumnsAreServedWithoutQuery()
+    {
+        find("1001", "name", "email");
+        UserEntity user = find("1001", "email");
+
+        assertEquals(1, mJdbcTemplate.mQueries.size());
+        assertEquals("john@example.com", user.getClaim(UserClaim.EMAIL, null));
+    }
+
+
+    @Test
+    public void missingColumnReloadsUnionOfColumns()
+    {
+        find("1001", "name");
+        UserEntity user = find("1001", "email");
+
+        assertEquals(List.of(
+                "SELECT subject, name FROM users WHERE subject = ?",
+                "SELECT subject, name, email FROM users WHERE subject = ?"), mJdbcTemplate.mQueries);
+        assertEquals("John Smith", user.getClaim(UserClaim.NAME, null));
+        assertEquals("john@example.com", user.getClaim(UserClaim.EMAIL, null));
+
+        // The new entry serves both claims.
+        find("1001", "name");
+        assertEquals(2, mJdbcTemplate.mQueries.size());
+    }
+
+
+    @Test
+    public void missingUserIsCached()
+    {
+        assertNull(mRepository.findBySubject("9999", new String[] { "name" }));
+        assertNull(mRepository.findBySubject("9999", new String[] { "email", "phone_number" }));
+
+        assertEquals(1, mJdbcTemplate.mQueries.size());
+    }
+
+
+    @Test
+    public void invalidateReloadsUser()
+    {
+        find("1001", "name");
+
+        mJdbcTemplate.update("UPDATE users SET name = ? WHERE subject = ?", "John Doe", "1001");
+
+        // The cached user is served until it is invalidated.
+        assertEquals("John Smith", find("1001", "name").getClaim(UserClaim.NAME, null));
+
+        mRepository.invalidate("1001");
+
+        assertEquals("John Doe", find("1001", "name").getClaim(UserClaim.NAME, null));
+        assertEquals(2, mJdbcTemplate.mQueries.size());
+    }
+
+
+    @Test
+    public void disabledCacheQueriesEveryTime()
+    {
+        JdbcUserRepository repository = new JdbcUserRepository(mJdbcTemplate, 0, Duration.ofMinutes(1));
+
+        assertNotNull(repository.findBySubject("1001", new String[] { "name" }));
+        assertNotNull(repository.findBySubject("1001", new String[] { "name" }));
+
+        assertEquals(2, mJdbcTemplate.mQueries.size());
+    }
+
+
+    private UserEntity find(String subject, String... claimNames)
+    {
+        return (UserEntity)mRepository.findBySubject(subject, claimNames);
+    }
+
+
+    /**
+     * A {@link JdbcTemplate} that records the SQL statements of queries.
+     */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate
+    {
+        private final List<String> mQueries = new ArrayList<String>();
+
+
+        RecordingJdbcTemplate(DataSource dataSource)
+        {
+            super(dataSource);
+        }
+
+
+        @Override
+        public <T> T query(String sql, ResultSetExtractor<T> rse, Object... args)
+        {
+            mQueries.add(sql);
+
+            return super.query(sql, rse, args);
+        }
+    }
+}
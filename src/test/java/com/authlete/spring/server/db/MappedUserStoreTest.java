@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import com.authlete.common.dto.Address;
+import com.authlete.common.types.User;
+
+
+/**
+ * Round-trip tests of {@link MappedUserStoreWriter} and {@link
+ * MappedUserStore}.
+ *
+ * <p>
+ * Each test runs with regions of various sizes. With regions as small
+ * as 4 or 8 bytes, integers, longs and strings straddle two regions.
+ * </p>
+ */
+public class MappedUserStoreTest
+{
+    private static final String LONG_EMAIL =
+            "a.very.long.address.that.spans.many.regions@example.com";
+
+
+    @TempDir
+    Path mDirectory;
+
+
+    private MappedUserStore open(int chunkBits) throws IOException
+    {
+        Path csv = mDirectory.resolve("users.csv");
+        Path bin = mDirectory.resolve("users.bin");
+
+        Files.write(csv, String.join("\n",
+                "subject,name,email,country,phone_number",
+                "1001,John Smith,john@example.com,USA,+1 (425) 555-1212",
+                "1002,,,,",
+                "ユーザー,山田太郎," + LONG_EMAIL + ",日本,",
+                "Ab,Ab,,,",
+                "BC,BC,,,"
+                ).getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(5, MappedUserStoreWriter.write(csv, bin));
+
+        return MappedUserStore.open(bin, chunkBits);
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(ints = { 2, 3, 4, 5, 30 })
+    public void usersAreFound(int chunkBits) throws IOException
+    {
+        MappedUserStore store = open(chunkBits);
+
+        assertEquals(5, store.size());
+
+        User user = store.getBySubject("1001");
+
+        assertNotNull(user);
+        assertEquals("1001", user.getSubject());
+        assertEquals("John Smith", user.getClaim("name", null));
+        assertEquals("john@example.com", user.getClaim("email", null));
+        assertEquals("USA", ((Address)user.getClaim("address", null)).getCountry());
+        assertEquals("+1 (425) 555-1212", user.getClaim("phone_number", null));
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(ints = { 2, 3, 4, 5, 30 })
+    public void emptyValuesAreNull(int chunkBits) throws IOException
+    {
+        User user = open(chunkBits).getBySubject("1002");
+
+        assertNotNull(user);
+        assertEquals("1002", user.getSubject());
+        assertNull(user.getClaim("name", null));
+        assertNull(user.getClaim("email", null));
+        assertNull(user.getClaim("address", null));
+        assertNull(user.getClaim("phone_number", null));
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(ints = { 2, 3, 4, 5, 30 })
+    public void nonAsciiSubjectIsFound(int chunkBits) throws IOException
+    {
+        User user = open(chunkBits).getBySubject("ユーザー");
+
+        assertNotNull(user);
+        assertEquals("ユーザー", user.getSubject());
+        assertEquals("山田太郎", user.getClaim("name", null));
+        assertEquals(LONG_EMAIL, user.getClaim("email", null));
+        assertEquals("日本", ((Address)user.getClaim("address", null)).getCountry());
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(ints = { 2, 3, 4, 5, 30 })
+    public void unknownSubjectsAreNotFound(int chunkBits) throws IOException
+    {
+        MappedUserStore store = open(chunkBits);
+
+        assertNull(store.getBySubject(null));
+        assertNull(store.getBySubject(""));
+        assertNull(store.getBySubject("1003"));
+        assertNull(store.getBySubject("100"));
+        assertNull(store.getBySubject("10011"));
+        assertNull(store.getBySubject("ユーザ"));
+        assertNull(store.getBySubject("ユーザーX"));
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(ints = { 2, 3, 4, 5, 30 })
+    public void subjectsWithSameHashAreDistinguished(int chunkBits) throws IOException
+    {
+        MappedUserStore store = open(chunkBits);
+
+        // "Ab", "BC", "C$" and "\u0841" have the same hash code.
+        assertEquals("Ab", store.getBySubject("Ab").getClaim("name", null));
+        assertEquals("BC", store.getBySubject("BC").getClaim("name", null));
+        assertNull(store.getBySubject("C$"));
+
+        // Compared with the stored ASCII subjects as non-ASCII.
+        assertNull(store.getBySubject("\u0841"));
+    }
+}
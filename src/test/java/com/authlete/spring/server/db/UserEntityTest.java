@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017 Authlete, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.authlete.spring.server.db;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+import com.authlete.common.dto.Address;
+
+
+/**
+ * Tests of the claim fragments of {@link UserEntity}.
+ */
+public class UserEntityTest
+{
+    private static UserEntity user()
+    {
+        return new UserEntity("1001", "John Smith", "john@example.com",
+                new Address().setCountry("USA"), null)
+                .setClaim(UserClaim.NAME, "ja", "ジョン・スミス");
+    }
+
+
+    @Test
+    public void fragmentsAreJsonValues()
+    {
+        UserEntity user = user();
+
+        assertEquals("\"John Smith\"", user.getClaimFragment(UserClaim.NAME, null));
+        assertEquals("{\"country\":\"USA\"}", user.getClaimFragment(UserClaim.ADDRESS, null));
+        assertNull(user.getClaimFragment(UserClaim.PHONE_NUMBER, null));
+        assertNull(user.getClaimFragment(null, null));
+    }
+
+
+    @Test
+    public void fragmentsAreRenderedOnce()
+    {
+        UserEntity user = user();
+
+        assertSame(user.getClaimFragment(UserClaim.EMAIL, null),
+                   user.getClaimFragment(UserClaim.EMAIL, null));
+        assertSame(user.getClaimFragment(UserClaim.NAME, "ja"),
+                   user.getClaimFragment(UserClaim.NAME, "ja"));
+    }
+
+
+    @Test
+    public void localizedFragmentFallsBackToDefault()
+    {
+        UserEntity user = user();
+
+        assertEquals("\"ジョン・スミス\"", user.getClaimFragment(UserClaim.NAME, "ja"));
+        assertEquals("\"John Smith\"", user.getClaimFragment(UserClaim.NAME, "fr"));
+        assertEquals("\"john@example.com\"", user.getClaimFragment(UserClaim.EMAIL, "ja"));
+    }
+
+
+    @Test
+    public void setClaimReplacesFragment()
+    {
+        UserEntity user = user();
+
+        user.getClaimFragment(UserClaim.NAME, null);
+        user.setClaim(UserClaim.NAME, null, "John Doe");
+
+        assertEquals("\"John Doe\"", user.getClaimFragment(UserClaim.NAME, null));
+    }
+}